@@ -0,0 +1,133 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.TreeMap;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares them with a baseline, so that a change that slows the kernels down shows up
+ * before a sweep of many hours. The baseline is a properties file of benchmark (with its parameters) to score,
+ * in nanoseconds per operation.
+ * <p>
+ * Usage: {@code BenchmarkRunner [regex] [--save]}. The regex picks the benchmarks to run (all by default).
+ * With --save the scores are saved as the new baseline; otherwise every score more than
+ * {@value #TOLERANCE} times the baseline is reported as a regression, and the exit code is 1 if there are
+ * any.
+ *
+ * @author Andreas Lianos
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The baseline file, relative to the working directory.
+     */
+    public static final String BASELINE = "benchmarks/baseline.properties";
+    /**
+     * How much slower than the baseline a benchmark may be, before it is reported (JMH scores of separate runs
+     * easily differ by a few percent).
+     */
+    public static final double TOLERANCE = 1.10;
+
+    public static void main( String[] args ) throws RunnerException, IOException {
+        String include = "benchmarks\\..*Benchmark";
+        boolean save = false;
+        for( String arg : args ) {
+            if( arg.equals( "--save" ) ) {
+                save = true;
+            }
+            else {
+                include = arg;
+            }
+        }
+
+        //the forks draw in blocks with the Vector API, as the simulations do when it is available
+        Collection<RunResult> results = new Runner( new OptionsBuilder().include( include )
+                .jvmArgsAppend( "--add-modules", "jdk.incubator.vector" ).build() ).run();
+        TreeMap<String, Double> scores = new TreeMap<>();
+        for( RunResult result : results ) {
+            scores.put( getKey( result.getParams() ), result.getPrimaryResult().getScore() );
+        }
+
+        Properties baseline = new Properties();
+        try( InputStream in = new FileInputStream( BASELINE ) ) {
+            baseline.load( in );
+        } catch( IOException e ) {
+            System.out.println( "No baseline found at " + BASELINE );
+        }
+
+        if( save ) {
+            for( String key : scores.keySet() ) {
+                baseline.setProperty( key, String.format( "%.3f", scores.get( key ) ) );
+            }
+            try( OutputStream out = new FileOutputStream( BASELINE ) ) {
+                baseline.store( out, "Benchmark scores in ns/op" );
+            }
+            System.out.println( "Saved " + scores.size() + " scores to " + BASELINE );
+            return;
+        }
+
+        int regressions = 0;
+        for( String key : scores.keySet() ) {
+            String previous = baseline.getProperty( key );
+            if( previous == null ) {
+                continue;
+            }
+            double ratio = scores.get( key ) / Double.parseDouble( previous );
+            System.out.format( "%-80s %10.3f %10s %6.2fx%s%n", key, scores.get( key ), previous, ratio,
+                    (ratio > TOLERANCE ? "  REGRESSION" : "") );
+            if( ratio > TOLERANCE ) {
+                regressions++;
+            }
+        }
+        if( regressions > 0 ) {
+            System.out.println( regressions + " benchmarks are slower than the baseline" );
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * @param params
+     * @return The name of the benchmark, followed by its parameters and threads, e.g.
+     * benchmarks.KernelBenchmark.roll[O=3,logged=true]@4
+     */
+    private static String getKey( BenchmarkParams params ) {
+        StringBuilder key = new StringBuilder( params.getBenchmark() );
+        key.append( '[' );
+        boolean first = true;
+        for( String name : params.getParamsKeys() ) {
+            key.append( first ? "" : "," ).append( name ).append( '=' ).append( params.getParam( name ) );
+            first = false;
+        }
+        key.append( "]@" ).append( params.getThreads() );
+        return key.toString();
+    }
+}
@@ -0,0 +1,112 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tests.FixedNumberSweepTest;
+import tests.FixedNumberTest;
+import tests.FixedNumberTestControlledDifficulties;
+import tests.FluctuatingNumberSweepTest;
+import tests.FluctuatingNumberTest;
+import tests.ResultAccumulator;
+
+/**
+ * Benchmarks of whole iterations of each type of test, on a single thread. Each invocation runs a chunk of
+ * {@value #ITERATIONS} iterations, and the scores are per iteration.
+ *
+ * @author Andreas Lianos
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class IterationBenchmark {
+
+    public static final int ITERATIONS = 1000;
+    @Param( { "3", "6" } )
+    public int O;
+    /**
+     * N for the fixed number tests, C for the fluctuating ones.
+     */
+    @Param( { "4", "24" } )
+    public int parameter;
+    private FixedNumberTest fixed;
+    private FixedNumberTestControlledDifficulties controlled;
+    private FluctuatingNumberTest fluctuating;
+    private FixedNumberSweepTest fixedSweep;
+    private FluctuatingNumberSweepTest fluctuatingSweep;
+    private int chunk;
+
+    @Setup
+    public void setUp() {
+        fixed = new FixedNumberTest( Integer.MAX_VALUE, parameter, O );
+        controlled = new FixedNumberTestControlledDifficulties( Integer.MAX_VALUE, parameter, O );
+        fluctuating = new FluctuatingNumberTest( Integer.MAX_VALUE, parameter, O );
+        fixedSweep = new FixedNumberSweepTest( Integer.MAX_VALUE, 1, parameter, O );
+        fluctuatingSweep = new FluctuatingNumberSweepTest( Integer.MAX_VALUE, 1, parameter, O );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ITERATIONS )
+    public ResultAccumulator fixedNumber() {
+        return fixed.runChunk( chunk++, ITERATIONS );
+    }
+
+    /**
+     * Every iteration of this test runs a generator of every difficulty.
+     */
+    @Benchmark
+    @OperationsPerInvocation( ITERATIONS )
+    public ResultAccumulator fixedNumberControlledDifficulties() {
+        return controlled.runChunk( chunk++, ITERATIONS );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ITERATIONS )
+    public ResultAccumulator fluctuatingNumber() {
+        return fluctuating.runChunk( chunk++, ITERATIONS );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ITERATIONS )
+    public ResultAccumulator[] fixedNumberSweep() {
+        return fixedSweep.runChunk( chunk++, ITERATIONS );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ITERATIONS )
+    public ResultAccumulator[] fluctuatingNumberSweep() {
+        return fluctuatingSweep.runChunk( chunk++, ITERATIONS );
+    }
+}
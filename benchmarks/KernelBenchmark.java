@@ -0,0 +1,203 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import minimumAnswers.libraries.OccurrenceSet;
+import minimumAnswers.libraries.VoteCounter;
+import minimumAnswers.main.AnswerGenerator;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.main.OptionServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import tests.GenericServices;
+
+/**
+ * Micro-benchmarks of the kernels every simulation spends its time in: drawing votes, rolling, generating
+ * distributions, counting votes and scoring them. Run them with {@link BenchmarkRunner}.
+ *
+ * @author Andreas Lianos
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class KernelBenchmark {
+
+    @Param( { "3", "6" } )
+    public int O;
+    private AnswerGenerator generator;
+    private VoteCounter votes;
+    private OccurrenceSet<String> occurrences;
+    private String[] names;
+    private String top;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "KernelBenchmark", O ) );
+        generator = new AnswerGenerator( OptionServices.generate( O, 1, 100 ) );
+        top = generator.getTopOption();
+        names = new String[O];
+        for( int i = 0; i < O; i++ ) {
+            names[i] = generator.getOptionName( i );
+        }
+        votes = new VoteCounter( O );
+        occurrences = new OccurrenceSet<>();
+        for( int i = 0; i < 20; i++ ) {
+            generator.drawInto( votes );
+            occurrences.add( generator.draw() );
+        }
+    }
+
+    @Benchmark
+    public String draw() {
+        return generator.draw();
+    }
+
+    @Benchmark
+    public int drawIndex() {
+        return generator.drawIndex();
+    }
+
+    @Benchmark
+    public int drawCounts20() {
+        votes.reset();
+        generator.drawCounts( 20, votes );
+        return votes.getLeader();
+    }
+
+    @Benchmark
+    public int drawInto200() {
+        votes.reset();
+        for( int i = 0; i < 200; i++ ) {
+            generator.drawInto( votes );
+        }
+        return votes.getLeader();
+    }
+
+    @Benchmark
+    public int drawBatch200() {
+        votes.reset();
+        generator.drawBatch( 200, votes );
+        return votes.getLeader();
+    }
+
+    @Benchmark
+    public boolean occurrenceSetAdd() {
+        return occurrences.add( names[next++ % O] );
+    }
+
+    @Benchmark
+    public OccurrenceSet<String> occurrenceSetGetOrdered() {
+        return occurrences.getOrdered();
+    }
+
+    @Benchmark
+    public int occurrenceSetTopTwoDifference() {
+        return OccurrenceSet.topTwoDifference( occurrences );
+    }
+
+    @Benchmark
+    public int getResultOccurrenceSet() {
+        return GenericServices.getResult( top, occurrences );
+    }
+
+    @Benchmark
+    public int getResultVoteCounter() {
+        return GenericServices.getResult( generator.getTopOptionIndex(), votes );
+    }
+
+    /**
+     * Generating distributions, across bands of difficulty.
+     */
+    @State( Scope.Thread )
+    public static class Generation {
+
+        @Param( { "3", "6" } )
+        public int O;
+        @Param( { "1-100", "1-10", "45-55", "90-100" } )
+        public String band;
+        private int min;
+        private int max;
+
+        @Setup
+        public void setUp() {
+            String[] limits = band.split( "-" );
+            min = Integer.parseInt( limits[0] );
+            max = Integer.parseInt( limits[1] );
+            LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "KernelBenchmark.Generation", O, min, max ) );
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> generate( Generation generation ) {
+        return OptionServices.generate( generation.O, generation.min, generation.max );
+    }
+
+    /**
+     * Rolling, with and without logging. Logging is global, so the state is shared by the threads of a
+     * benchmark.
+     */
+    @State( Scope.Benchmark )
+    public static class Rolling {
+
+        @Param( { "false", "true" } )
+        public boolean logged;
+
+        @Setup( Level.Trial )
+        public void setUp() {
+            LoggedRandom.getInstance().setLogged( logged );
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDown() {
+            LoggedRandom.getInstance().setLogged( false );
+            LoggedRandom.getInstance().clearHistory();
+        }
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public int roll( Rolling rolling ) {
+        return LoggedRandom.getInstance().roll( 100 );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public int rollFourThreads( Rolling rolling ) {
+        return LoggedRandom.getInstance().roll( 100 );
+    }
+}
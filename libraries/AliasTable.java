@@ -0,0 +1,161 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.libraries;
+
+/**
+ * A Walker/Vose alias table over a discrete distribution of options (0 to size-1). Any distribution can be
+ * sampled in constant time, from a single uniform roll in [0-{@link #getRollBound()}). The roll is split in
+ * two: the high bits pick a column of the table, and the low bits decide between the column and its alias.
+ * The table is a few arrays of the size of the distribution, so it stays small even for hundreds of options.
+ * <br><br>A single roll only keeps up to {@value #MAX_PRECISION_BITS} bits to choose between a column and its
+ * alias, so options with tiny weights are rounded (possibly to 0). {@link #sample(int, double)} chooses with a
+ * uniform double instead, and keeps the weights to full double precision.
+ *
+ * @author Andreas Lianos
+ */
+public final class AliasTable {
+
+    /**
+     * The most bits of the roll used to choose between a column and its alias.
+     */
+    private static final int MAX_PRECISION_BITS = 20;
+    private final int[] thresholds;
+    /**
+     * The probability of keeping each column rather than its alias, unrounded.
+     */
+    private final double[] columnProbabilities;
+    private final int[] aliases;
+    private final int precisionBits;
+    private final int precisionMask;
+
+    /**
+     * Builds the table for the given weights. The weights do not have to add up to anything, they are
+     * normalised.
+     *
+     * @param weights The (non-negative) weight of each option, indexed by option.
+     */
+    public AliasTable( double[] weights ) {
+        int n = weights.length;
+        if( n < 1 ) {
+            throw new IllegalArgumentException( "An alias table needs at least one option" );
+        }
+        if( n > (1 << 30) ) {
+            throw new IllegalArgumentException( "An alias table can have at most 2^30 options (" + n + " given)" );
+        }
+        double sum = 0;
+        for( double weight : weights ) {
+            if( weight < 0 || Double.isNaN( weight ) || Double.isInfinite( weight ) ) {
+                throw new IllegalArgumentException( "Weights must be finite and non-negative (" + weight + " given)" );
+            }
+            sum += weight;
+        }
+        if( sum <= 0 ) {
+            throw new IllegalArgumentException( "At least one weight must be positive" );
+        }
+
+        //keep n << precisionBits within the int range of the roll
+        int indexBits = 32 - Integer.numberOfLeadingZeros( n - 1 );
+        this.precisionBits = Math.min( MAX_PRECISION_BITS, 30 - indexBits );
+        this.precisionMask = (1 << precisionBits) - 1;
+        this.thresholds = new int[n];
+        this.columnProbabilities = new double[n];
+        this.aliases = new int[n];
+
+        //Vose: scale the probabilities so the average column is 1, then pair every small column with a large one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for( int i = 0; i < n; i++ ) {
+            scaled[i] = weights[i] * n / sum;
+            if( scaled[i] < 1 ) {
+                small[smallSize++] = i;
+            }
+            else {
+                large[largeSize++] = i;
+            }
+        }
+        while( smallSize > 0 && largeSize > 0 ) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            setColumn( less, scaled[less], more );
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if( scaled[more] < 1 ) {
+                small[smallSize++] = more;
+            }
+            else {
+                large[largeSize++] = more;
+            }
+        }
+        //whatever is left is 1, give or take rounding errors
+        while( largeSize > 0 ) {
+            int column = large[--largeSize];
+            setColumn( column, 1, column );
+        }
+        while( smallSize > 0 ) {
+            int column = small[--smallSize];
+            setColumn( column, 1, column );
+        }
+    }
+
+    private void setColumn( int column, double probability, int alias ) {
+        long threshold = Math.round( probability * (1 << precisionBits) );
+        thresholds[column] = (int) Math.min( threshold, 1 << precisionBits );
+        columnProbabilities[column] = probability;
+        aliases[column] = alias;
+    }
+
+    /**
+     * @return The (exclusive) upper bound of the rolls passed to {@link #sample(int)}.
+     */
+    public int getRollBound() {
+        return thresholds.length << precisionBits;
+    }
+
+    /**
+     * Maps a uniform roll to an option.
+     *
+     * @param roll A uniform random number in [0-{@link #getRollBound()})
+     * @return The index of the sampled option.
+     */
+    public int sample( int roll ) {
+        int column = roll >>> precisionBits;
+        return ((roll & precisionMask) < thresholds[column] ? column : aliases[column]);
+    }
+
+    /**
+     * Maps a column and a uniform double to an option, at full precision.
+     *
+     * @param column A uniform random number in [0-{@link #size()})
+     * @param uniform A uniform random number in [0-1)
+     * @return The index of the sampled option.
+     */
+    public int sample( int column, double uniform ) {
+        return (uniform < columnProbabilities[column] ? column : aliases[column]);
+    }
+
+    /**
+     * @return The number of options in the table.
+     */
+    public int size() {
+        return thresholds.length;
+    }
+}
@@ -21,22 +21,43 @@ package minimumAnswers.libraries;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
+ * A set that counts how many times each element occurs. The elements keep the order they were added in (which
+ * is what the indexes refer to), a hash index finds any element in constant time, and a tree kept in order of
+ * occurrences gives the ordered views and the top elements in logarithmic time. Elements that occur as many
+ * times as each other are ordered by the order they were added in.
  *
  * @author Andreas Lianos
  */
 public final class OccurrenceSet<T> implements Set<T> {
 
-    private List<T> elements;
-    private List<Integer> occurrences;
+    /**
+     * Most occurrences first, then the earliest added.
+     */
+    private static final Comparator<Entry<?>> BY_OCCURRENCES = new Comparator<Entry<?>>() {
+        @Override
+        public int compare( Entry<?> a, Entry<?> b ) {
+            if( a.occurrences != b.occurrences ) {
+                return (a.occurrences > b.occurrences ? -1 : 1);
+            }
+            return Long.compare( a.sequence, b.sequence );
+        }
+    };
+    private final List<Entry<T>> elements = new ArrayList<>();
+    private final Map<T, Entry<T>> index = new HashMap<>();
+    private final TreeSet<Entry<T>> ordered = new TreeSet<>( BY_OCCURRENCES );
+    private long nextSequence = 0;
+    private int totalOccurrences = 0;
 
     public OccurrenceSet() {
-        this.elements = new ArrayList<>();
-        this.occurrences = new ArrayList<>();
     }
 
     public OccurrenceSet( OccurrenceSet<T> initialList ) {
@@ -55,17 +76,17 @@ public final class OccurrenceSet<T> implements Set<T> {
 
     public List<T> asUniqueList() {
         List<T> list = new ArrayList<>();
-        for( T element : elements ) {
-            list.add( element );
+        for( Entry<T> entry : elements ) {
+            list.add( entry.element );
         }
         return list;
     }
 
     public List<T> asNonUniqueList() {
         List<T> list = new ArrayList<>();
-        for( T element : elements ) {
-            for( int i = 0; i < getOccurrences( element ); i++ ) {
-                list.add( element );
+        for( Entry<T> entry : elements ) {
+            for( int i = 0; i < entry.occurrences; i++ ) {
+                list.add( entry.element );
             }
         }
         return list;
@@ -79,17 +100,20 @@ public final class OccurrenceSet<T> implements Set<T> {
      */
     @Override
     public boolean add( T element ) {
-
-        if( this.contains( element ) ) {
-            this.incrementOccurrences( element );
+        Entry<T> entry = index.get( element );
+        if( entry != null ) {
+            setOccurrences( entry, entry.occurrences + 1 );
             return false;
         }
         else {
-            this.elements.add( element );
-            this.occurrences.add( 1 );
+            entry = new Entry<>( element, 1, nextSequence++ );
+            entry.position = elements.size();
+            elements.add( entry );
+            index.put( element, entry );
+            ordered.add( entry );
+            totalOccurrences++;
             return true;
         }
-
     }
 
     /**
@@ -115,36 +139,36 @@ public final class OccurrenceSet<T> implements Set<T> {
      * @return True if the element is just added, false if it already existed.
      */
     public boolean setOccurrences( T element, Integer occurrences ) {
-        boolean newElement = !this.elements.contains( element );
-        if( newElement ) {
+        Entry<T> entry = index.get( element );
+        if( entry == null ) {
             this.add( element, occurrences );
+            return true;
         }
-        else {
-            this.occurrences.set( this.elements.indexOf( element ), occurrences );
-        }
+        setOccurrences( entry, occurrences );
+        return false;
+    }
 
-        return newElement;
+    /**
+     * Changes the occurrences of an entry, keeping it in its place in the ordered tree.
+     */
+    private void setOccurrences( Entry<T> entry, int occurrences ) {
+        ordered.remove( entry );
+        totalOccurrences += occurrences - entry.occurrences;
+        entry.occurrences = occurrences;
+        ordered.add( entry );
     }
 
     public int sizeWithOccurrences() {
-
-        int counter = 0;
-        for( Integer size : occurrences ) {
-            counter += size;
-        }
-
-        return counter;
+        return totalOccurrences;
     }
 
     /**
-     * @param i
+     * @param k
      * @return the occurrences, of a the searched element in the set. 0 if not found.
      */
     public int getOccurrences( T k ) {
-        if( this.elements.contains( k ) ) {
-            return this.occurrences.get( indexOf( k ) );
-        }
-        return 0;
+        Entry<T> entry = index.get( k );
+        return (entry == null ? 0 : entry.occurrences);
     }
 
     /**
@@ -152,62 +176,40 @@ public final class OccurrenceSet<T> implements Set<T> {
      * @return the occurrences, of a specific element in the set
      */
     public Integer getOccurrences( int i ) {
-        return this.occurrences.get( i );
+        return this.elements.get( i ).occurrences;
     }
 
-    //@@move to services
     /**
      * Get an ordered copy of the occurrence list
      *
-     * @return A new ordered list, Ascending.
+     * @return A new list, ordered by descending occurrences.
      */
     public OccurrenceSet<T> getOrdered() {
-        OccurrenceSet<T> ordered = new OccurrenceSet<>();
-        for( int i = 0; i < this.size(); i++ ) {
-            int max = Integer.MIN_VALUE;
-            T minElement = null;
-            for( T element : this ) {
-                if( getOccurrences( element ) > max && !ordered.contains( element ) ) {
-                    max = getOccurrences( element );
-                    minElement = element;
-                }
-            }
-            ordered.add( minElement, getOccurrences( minElement ) );
-        }
-        return ordered;
+        return getTop( size() );
     }
 
-    //@@move to services
     /**
-     * Returns the most common element of the set. If multiple elements share the top, one of them is returned
-     * randomly.
+     * Returns the most common element of the set. If multiple elements share the top, the one added first is
+     * returned.
      *
-     * @return
+     * @return The element, null if the set is empty
      */
     public T getTop() {
-        for( int i = 0; i < this.size(); i++ ) {
-            int max = Integer.MIN_VALUE;
-            T maxElement = null;
-            for( T element : this ) {
-                if( getOccurrences( element ) > max ) {
-                    max = getOccurrences( element );
-                    maxElement = element;
-                }
-            }
-            return maxElement;
-        }
-        return null;
+        return (ordered.isEmpty() ? null : ordered.first().element);
     }
 
+    /**
+     * @param num
+     * @return A new set with the num most common elements (or all, if there are fewer), ordered by descending
+     * occurrences.
+     */
     public OccurrenceSet<T> getTop( int num ) {
-        OccurrenceSet<T> ordered = this.getOrdered();
         OccurrenceSet<T> result = new OccurrenceSet<>();
-        num = (num <= ordered.size() ? num : ordered.size());
-
-        for( int i = 0; i < num; i++ ) {
-            result.add( ordered.get( i ), ordered.getOccurrences( i ) );
+        Iterator<Entry<T>> iterator = ordered.iterator();
+        for( int i = 0; i < num && iterator.hasNext(); i++ ) {
+            Entry<T> entry = iterator.next();
+            result.add( entry.element, entry.occurrences );
         }
-
         return result;
     }
 
@@ -230,20 +232,26 @@ public final class OccurrenceSet<T> implements Set<T> {
      * @return The total amount of occurrences, 0 if element in not in the list.
      */
     public Integer incrementOccurrences( T k, int i ) {
-        Integer o = this.occurrences.get( indexOf( k ) );
-        this.occurrences.set( indexOf( k ), o + i );
-        return o + i;
+        Entry<T> entry = index.get( k );
+        if( entry == null ) {
+            return 0;
+        }
+        if( i != 0 ) {
+            setOccurrences( entry, entry.occurrences + i );
+        }
+        return entry.occurrences;
     }
 
     public T get( int i ) throws ArrayIndexOutOfBoundsException {
         if( i > elements.size() ) {
             throw new ArrayIndexOutOfBoundsException();
         }
-        return elements.get( i );
+        return elements.get( i ).element;
     }
 
     public int indexOf( Object k ) {
-        return elements.indexOf( k );
+        Entry<T> entry = index.get( k );
+        return (entry == null ? -1 : entry.position);
     }
 
     @Override
@@ -251,9 +259,23 @@ public final class OccurrenceSet<T> implements Set<T> {
         return elements.size();
     }
 
+    /**
+     * @return The elements in the order they were added. The iterator cannot remove them.
+     */
     @Override
     public Iterator<T> iterator() {
-        return elements.iterator();
+        final Iterator<Entry<T>> entries = elements.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entries.next().element;
+            }
+        };
     }
 
     @Override
@@ -263,12 +285,12 @@ public final class OccurrenceSet<T> implements Set<T> {
 
     @Override
     public boolean contains( Object o ) {
-        return this.elements.contains( o );
+        return this.index.containsKey( o );
     }
 
     @Override
     public Object[] toArray() {
-        return this.elements.toArray();
+        return asUniqueList().toArray();
     }
 
     @Override
@@ -278,18 +300,22 @@ public final class OccurrenceSet<T> implements Set<T> {
 
     @Override
     public boolean remove( Object o ) {
-        T removed = this.remove( indexOf( o ) );
-        if( removed != null ) {
-            return true;
-        }
-        else {
-            return true;
+        int i = indexOf( o );
+        if( i < 0 ) {
+            return false;
         }
+        this.remove( i );
+        return true;
     }
 
     @Override
     public boolean containsAll( Collection<?> clctn ) {
-        throw new UnsupportedOperationException( "Not supported yet." );
+        for( Object element : clctn ) {
+            if( !contains( element ) ) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -302,7 +328,7 @@ public final class OccurrenceSet<T> implements Set<T> {
     public boolean addAll( Collection<? extends T> clctn ) {
         boolean added = false;
         for( T element : clctn ) {
-            added = (this.add( element ) && added == false ? true : false);
+            added |= this.add( element );
         }
         return added;
     }
@@ -319,28 +345,57 @@ public final class OccurrenceSet<T> implements Set<T> {
 
     @Override
     public void clear() {
-        throw new UnsupportedOperationException( "Not supported yet." );
+        elements.clear();
+        index.clear();
+        ordered.clear();
+        totalOccurrences = 0;
     }
 
+    /**
+     * Replaces the element at the given index, keeping its place in the order of the elements.
+     *
+     * @param i
+     * @param e
+     * @param occurrences
+     * @return The element replaced
+     * @throws IllegalArgumentException if the new element is already in the set, at another index
+     */
     public T set( int i, T e, int occurrences ) {
-        this.occurrences.set( i, occurrences );
-        return this.elements.set( i, e );
+        Entry<T> old = elements.get( i );
+        Entry<T> existing = index.get( e );
+        if( existing != null && existing != old ) {
+            throw new IllegalArgumentException( e + " is already in the set, at " + existing.position );
+        }
+        ordered.remove( old );
+        index.remove( old.element );
+        Entry<T> entry = new Entry<>( e, occurrences, old.sequence );
+        entry.position = i;
+        elements.set( i, entry );
+        index.put( e, entry );
+        ordered.add( entry );
+        totalOccurrences += occurrences - old.occurrences;
+        return old.element;
     }
 
     public T remove( int i ) {
-        this.occurrences.remove( i );
-        return this.elements.remove( i );
+        Entry<T> removed = elements.remove( i );
+        index.remove( removed.element );
+        ordered.remove( removed );
+        totalOccurrences -= removed.occurrences;
+        for( int j = i; j < elements.size(); j++ ) {
+            elements.get( j ).position = j;
+        }
+        return removed.element;
     }
 
-    //@@should be in a services object (as it does not have any direct reference to variables.
     /**
      *
      * @return A deep copy of the List.
      */
     public OccurrenceSet<T> getCopy() {
         OccurrenceSet<T> temp = new OccurrenceSet<T>();
-        for( T element : this ) {
-            temp.add( element, this.getOccurrences( element ) );
+        for( Entry<T> entry : elements ) {
+            temp.add( entry.element, entry.occurrences );
         }
         return temp;
     }
@@ -348,32 +403,18 @@ public final class OccurrenceSet<T> implements Set<T> {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for( int i = 0; i < elements.size(); i++ ) {
-            sb.append( "\n" ).append( occurrences.get( i ) ).append( " x " ).append( elements.get( i ) );
+        for( Entry<T> entry : elements ) {
+            sb.append( "\n" ).append( entry.occurrences ).append( " x " ).append( entry.element );
         }
         return sb.toString();
     }
 
     public int getHighestIndividualOccurrence() {
-        int max = 0;
-        for( Integer occurrence : occurrences ) {
-            if( occurrence > max ) {
-                max = occurrence;
-            }
-        }
-
-        return max;
+        return (ordered.isEmpty() ? 0 : Math.max( 0, ordered.first().occurrences ));
     }
 
     public int getLowestIndividualOccurrence() {
-        int min = Integer.MAX_VALUE;
-        for( Integer occurrence : occurrences ) {
-            if( occurrence < min ) {
-                min = occurrence;
-            }
-        }
-
-        return min;
+        return (ordered.isEmpty() ? Integer.MAX_VALUE : ordered.last().occurrences);
     }
 
     /**
@@ -383,16 +424,9 @@ public final class OccurrenceSet<T> implements Set<T> {
      * @return A Pair with the element and its occurrences at the time of removal.
      */
     public Pair<T, Integer> pop( T valueToRemove ) {
-        int toBeRemoved = -1;
-        for( int i = 0; i < elements.size(); i++ ) {
-            T element = elements.get( i );
-            if( element.equals( valueToRemove ) ) {
-                toBeRemoved = i;
-                break;
-            }
-        }
+        int toBeRemoved = indexOf( valueToRemove );
         if( toBeRemoved > -1 ) {
-            Pair<T, Integer> result = new Pair( this.get( toBeRemoved ), this.getOccurrences( toBeRemoved ) );
+            Pair<T, Integer> result = new Pair<>( this.get( toBeRemoved ), this.getOccurrences( toBeRemoved ) );
             this.remove( toBeRemoved );
             return result;
         }
@@ -411,8 +445,8 @@ public final class OccurrenceSet<T> implements Set<T> {
     }
 
     public boolean isSubsetOf( OccurrenceSet<T> that ) {
-        for( T thisT : elements ) {
-            if( !that.contains( thisT ) || this.getOccurrences( thisT ) != that.getOccurrences( thisT ) ) {
+        for( Entry<T> entry : elements ) {
+            if( !that.contains( entry.element ) || entry.occurrences != that.getOccurrences( entry.element ) ) {
                 return false;
             }
         }
@@ -429,7 +463,6 @@ public final class OccurrenceSet<T> implements Set<T> {
      * null
      */
     public static int topTwoDifference( OccurrenceSet set ) {
-        int difference;
         if( set == null ) {
             return -2;
         }
@@ -437,15 +470,35 @@ public final class OccurrenceSet<T> implements Set<T> {
             return -1;
         }
 
-        Integer firstVotes = set.getOrdered().getOccurrences( 0 );
-        if( set.size() > 1 ) {
-            Integer secondVotes = set.getOrdered().getOccurrences( 1 );
-            difference = firstVotes - secondVotes;
-        }
-        else {
-            return firstVotes; //assume the second option is 0
+        return topTwo( (OccurrenceSet<?>) set );
+    }
+
+    /**
+     * Reads the two most common elements from the ordered tree of a set that is not empty.
+     */
+    private static <T> int topTwo( OccurrenceSet<T> set ) {
+        Iterator<Entry<T>> top = set.ordered.iterator();
+        int firstVotes = top.next().occurrences;
+        if( top.hasNext() ) {
+            return firstVotes - top.next().occurrences;
         }
+        return firstVotes; //assume the second option is 0
+    }
 
-        return difference;
+    /**
+     * An element, its occurrences, and when it was added (which orders elements with the same occurrences).
+     */
+    private static final class Entry<T> {
+
+        private final T element;
+        private int occurrences;
+        private final long sequence;
+        private int position;
+
+        private Entry( T element, int occurrences, long sequence ) {
+            this.element = element;
+            this.occurrences = occurrences;
+            this.sequence = sequence;
+        }
     }
 }
@@ -0,0 +1,264 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.libraries;
+
+import java.util.Arrays;
+
+/**
+ * A counter of votes for options from a large space (thousands of options or more), of which only a few are
+ * ever voted for. It works like a {@link VoteCounter}, but only keeps the options that got votes, in an open
+ * addressing hash table of primitive ints. Its memory, and the time to add a vote or to reset it, depend on
+ * the number of options voted for and not on the number of options there are.<br><br>The leading option and
+ * the runner-up are kept up to date as votes are added, as in a {@link VoteCounter}. Options without votes
+ * count as 0.
+ *
+ * @author Andreas Lianos
+ */
+public final class SparseVoteCounter {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+    /**
+     * The options, at the slot their hash points to (or the next free one). EMPTY for free slots.
+     */
+    private int[] options;
+    private int[] counts;
+    /**
+     * The slots in use, in the order their options got their first vote. Resetting only clears these.
+     */
+    private int[] used;
+    private int votedOptions;
+    private int mask;
+    private int total;
+    private int leader = EMPTY;
+    private int runnerUp = EMPTY;
+    private int leaderVotes;
+    private int runnerUpVotes;
+
+    public SparseVoteCounter() {
+        this( INITIAL_CAPACITY );
+    }
+
+    /**
+     * @param expectedOptions How many options are expected to get votes. The counter grows past this if needed.
+     */
+    public SparseVoteCounter( int expectedOptions ) {
+        int capacity = INITIAL_CAPACITY;
+        while( capacity < 2 * expectedOptions ) {
+            capacity <<= 1;
+        }
+        allocate( capacity );
+    }
+
+    private void allocate( int capacity ) {
+        options = new int[capacity];
+        Arrays.fill( options, EMPTY );
+        counts = new int[capacity];
+        used = new int[capacity / 2];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a single vote to the given option
+     *
+     * @param option The index of the option, 0 or above
+     */
+    public void add( int option ) {
+        add( option, 1 );
+    }
+
+    /**
+     * Adds a number of votes to the given option
+     *
+     * @param option The index of the option, 0 or above
+     * @param votes
+     */
+    public void add( int option, int votes ) {
+        if( option < 0 ) {
+            throw new IllegalArgumentException( "Options are identified by indexes of 0 or above (" + option + " given)" );
+        }
+        int slot = find( option );
+        if( options[slot] == EMPTY ) {
+            if( votedOptions == used.length ) {
+                grow();
+                slot = find( option );
+            }
+            options[slot] = option;
+            used[votedOptions++] = slot;
+        }
+        counts[slot] += votes;
+        total += votes;
+        updateTopTwo( option, counts[slot] );
+    }
+
+    /**
+     * @return The slot of the option, or the free slot where it should go.
+     */
+    private int find( int option ) {
+        //spread the bits of the index, consecutive options would otherwise cluster
+        int hash = option * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while( options[slot] != EMPTY && options[slot] != option ) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table. Only happens while the counter is first filled: after a reset the table keeps its
+     * size.
+     */
+    private void grow() {
+        int[] oldOptions = options;
+        int[] oldCounts = counts;
+        int[] oldUsed = used;
+        allocate( options.length * 2 );
+        for( int i = 0; i < votedOptions; i++ ) {
+            int slot = find( oldOptions[oldUsed[i]] );
+            options[slot] = oldOptions[oldUsed[i]];
+            counts[slot] = oldCounts[oldUsed[i]];
+            used[i] = slot;
+        }
+    }
+
+    /**
+     * Only the count of the given option has grown, so it can only move up past the runner-up and the leader.
+     * An option that equals the leader does not take over, so the leader is the first option to reach the top
+     * count.
+     */
+    private void updateTopTwo( int option, int votes ) {
+        if( option == leader ) {
+            leaderVotes = votes;
+        }
+        else if( option == runnerUp ) {
+            runnerUpVotes = votes;
+            if( votes > leaderVotes ) {
+                swapTopTwo();
+            }
+        }
+        else if( votes > runnerUpVotes ) {
+            runnerUp = option;
+            runnerUpVotes = votes;
+            if( votes > leaderVotes ) {
+                swapTopTwo();
+            }
+        }
+    }
+
+    private void swapTopTwo() {
+        int option = runnerUp;
+        int votes = runnerUpVotes;
+        runnerUp = leader;
+        runnerUpVotes = leaderVotes;
+        leader = option;
+        leaderVotes = votes;
+    }
+
+    /**
+     * @param option The index of the option
+     * @return The votes the option has received so far, 0 if none.
+     */
+    public int getVotes( int option ) {
+        if( option < 0 ) {
+            return 0;
+        }
+        int slot = find( option );
+        return (options[slot] == EMPTY ? 0 : counts[slot]);
+    }
+
+    /**
+     * @return The number of options that got at least one vote.
+     */
+    public int size() {
+        return votedOptions;
+    }
+
+    /**
+     * @return The total number of votes added to the counter.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the option with the most votes. If multiple options share the top, the one that reached the top
+     * count first is returned.
+     *
+     * @return The index of the leading option, -1 if no votes have been added.
+     */
+    public int getLeader() {
+        return leader;
+    }
+
+    /**
+     * Returns the option with the second most votes. If the top is shared, this is one of the options that share
+     * it.
+     *
+     * @return The index of the runner-up, -1 if fewer than two options got votes.
+     */
+    public int getRunnerUp() {
+        return runnerUp;
+    }
+
+    /**
+     * Returns the difference in votes between the most voted option and the second most voted option. Options
+     * without votes count as 0.
+     *
+     * @return The difference. 0 if two or more options tie at the top. -1 if no votes have been added.
+     */
+    public int getMargin() {
+        if( total == 0 ) {
+            return -1;
+        }
+        return leaderVotes - runnerUpVotes;
+    }
+
+    /**
+     * @return true if two or more options share the most votes (including when no votes have been added).
+     */
+    public boolean isTied() {
+        return leaderVotes == runnerUpVotes;
+    }
+
+    /**
+     * Removes all votes, so the counter can be reused. Only the slots of the options that got votes are cleared.
+     */
+    public void reset() {
+        for( int i = 0; i < votedOptions; i++ ) {
+            options[used[i]] = EMPTY;
+            counts[used[i]] = 0;
+        }
+        votedOptions = 0;
+        total = 0;
+        leader = EMPTY;
+        runnerUp = EMPTY;
+        leaderVotes = 0;
+        runnerUpVotes = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < votedOptions; i++ ) {
+            sb.append( "\n" ).append( counts[used[i]] ).append( " x " ).append( options[used[i]] );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.libraries;
+
+import java.util.Arrays;
+
+/**
+ * A counter of votes for a fixed number of options, where each option is identified by its index (0 to
+ * size-1). It is the primitive counterpart of an {@link OccurrenceSet} for the simulation loops: adding a vote
+ * is a single array increment, with no searching and no boxing.<br><br>The counter also keeps track of the
+ * leading option and the runner-up as votes are added. Votes only ever increase a single count, so the two can
+ * be updated in constant time, and the margin between them never needs a scan or a sort.
+ *
+ * @author Andreas Lianos
+ */
+public final class VoteCounter {
+
+    private final int[] counts;
+    private int total;
+    private int leader;
+    private int runnerUp;
+
+    /**
+     * @param numOfOptions How many options can be voted for. Votes are then added by option index, between
+     * [0-(numOfOptions-1)]
+     */
+    public VoteCounter( int numOfOptions ) {
+        if( numOfOptions < 1 ) {
+            throw new IllegalArgumentException( "A vote counter needs at least one option (" + numOfOptions + " given)" );
+        }
+        this.counts = new int[numOfOptions];
+        resetTopTwo();
+    }
+
+    /**
+     * Adds a single vote to the given option
+     *
+     * @param option The index of the option
+     */
+    public void add( int option ) {
+        counts[option]++;
+        total++;
+        updateTopTwo( option );
+    }
+
+    /**
+     * Adds a number of votes to the given option
+     *
+     * @param option The index of the option
+     * @param votes
+     */
+    public void add( int option, int votes ) {
+        counts[option] += votes;
+        total += votes;
+        updateTopTwo( option );
+    }
+
+    /**
+     * Only the count of the given option has grown, so it can only move up past the runner-up and the leader.
+     * An option that equals the leader does not take over, so the leader is the first option to reach the top
+     * count.
+     *
+     * @param option The index of the option that just received votes.
+     */
+    private void updateTopTwo( int option ) {
+        if( option == leader ) {
+            return;
+        }
+        if( option == runnerUp ) {
+            if( counts[option] > counts[leader] ) {
+                runnerUp = leader;
+                leader = option;
+            }
+        }
+        else if( counts[option] > getVotesOfRunnerUp() ) {
+            if( counts[option] > counts[leader] ) {
+                runnerUp = leader;
+                leader = option;
+            }
+            else {
+                runnerUp = option;
+            }
+        }
+    }
+
+    private int getVotesOfRunnerUp() {
+        return (runnerUp < 0 ? 0 : counts[runnerUp]);
+    }
+
+    private void resetTopTwo() {
+        leader = 0;
+        runnerUp = (counts.length > 1 ? 1 : -1);
+    }
+
+    /**
+     * @param option The index of the option
+     * @return The votes the option has received so far.
+     */
+    public int getVotes( int option ) {
+        return counts[option];
+    }
+
+    /**
+     * @return The number of options that can be voted for (not only the ones that got votes).
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    /**
+     * @return The total number of votes added to the counter.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the option with the most votes. If multiple options share the top, the one that reached the top
+     * count first is returned.
+     *
+     * @return The index of the leading option, -1 if no votes have been added.
+     */
+    public int getLeader() {
+        return (total == 0 ? -1 : leader);
+    }
+
+    /**
+     * Returns the option with the second most votes. If the top is shared, this is one of the options that share
+     * it.
+     *
+     * @return The index of the runner-up, -1 if no votes have been added or there is only one option.
+     */
+    public int getRunnerUp() {
+        return (total == 0 ? -1 : runnerUp);
+    }
+
+    /**
+     * Returns the difference in votes between the most voted option and the second most voted option. Options
+     * without votes count as 0.
+     *
+     * @return The difference. 0 if two or more options tie at the top. -1 if no votes have been added.
+     */
+    public int getMargin() {
+        if( total == 0 ) {
+            return -1;
+        }
+        return counts[leader] - getVotesOfRunnerUp();
+    }
+
+    /**
+     * @return true if two or more options share the most votes (including when no votes have been added).
+     */
+    public boolean isTied() {
+        return counts[leader] == getVotesOfRunnerUp();
+    }
+
+    /**
+     * Removes all votes, so the counter can be reused.
+     */
+    public void reset() {
+        Arrays.fill( counts, 0 );
+        total = 0;
+        resetTopTwo();
+    }
+
+    /**
+     * @return A copy of the votes of each option, indexed by option.
+     */
+    public int[] getCounts() {
+        return Arrays.copyOf( counts, counts.length );
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < counts.length; i++ ) {
+            sb.append( "\n" ).append( counts[i] ).append( " x " ).append( i );
+        }
+        return sb.toString();
+    }
+}
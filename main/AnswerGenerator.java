@@ -20,18 +20,54 @@
 package minimumAnswers.main;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import minimumAnswers.libraries.AliasTable;
+import minimumAnswers.libraries.VoteCounter;
 
 /**
+ * Draws answers from a distribution of options. By default the distribution is given in whole percentages and
+ * answers are drawn from a 100 slot roller array. For finer distributions (per-mille, or arbitrary weights) the
+ * generator uses an {@link AliasTable} instead, which draws in constant time from a single roll as well.
  *
  * @author Andreas Lianos, andreas.lianos@port.ac.uk
  */
 public class AnswerGenerator {
 
+    /**
+     * The resolution of the weights given as doubles. These are kept as parts per million in the options map.
+     */
+    private static final int WEIGHT_RESOLUTION = 1000000;
     private Map<String, Integer> options = new HashMap<>();
-    private String[] rollerArray = new String[100];
-    private final int difference;
-    private final String topOption;
+    /**
+     * The option names, indexed by the option index used in {@link #drawIndex()}.
+     */
+    private final String[] optionNames;
+    /**
+     * The probability of each option, indexed by option.
+     */
+    private final double[] probabilities;
+    private int[] rollerArray;
+    /**
+     * Where the range of each option ends in the roller array (the percentage of the options up to and including
+     * it), indexed by option. Used by {@link #drawBatch(int, VoteCounter)}.
+     */
+    private int[] thresholds;
+    /**
+     * Used instead of the roller array when the options are not given in whole percentages.
+     */
+    private AliasTable aliasTable;
+    /**
+     * What the values of the options map add up to (100 for percentages).
+     */
+    private final int resolution;
+    /**
+     * The percentages {@link #regenerate(int, int)} rolls into, for reusable generators.
+     */
+    private int[] generated;
+    private int difference;
+    private String topOption;
+    private int topOptionIndex;
 
     /**
      * create a generator with the given options. The options Map contains a key with the name of the options,
@@ -40,47 +76,391 @@ public class AnswerGenerator {
      * @param options A ready made map of options and their probability.
      */
     public AnswerGenerator( Map<String, Integer> options ) {
+        this( options, 100 );
+    }
+
+    /**
+     * Create a generator with the given options, where the probabilities are given at a resolution other than
+     * percentages. For example, with a resolution of 1000 the values of the map are per-mille.
+     *
+     * @param options A ready made map of options and their probability, in units of 1/resolution.
+     * @param resolution What the values of the options add up to.
+     */
+    public AnswerGenerator( Map<String, Integer> options, int resolution ) {
         this.options = options;
+        this.resolution = resolution;
         //we'll need that later, we might as well work it out now
         this.difference = OptionServices.getDifference( this.options );
         this.topOption = OptionServices.findMax( this.options );
+        this.optionNames = this.options.keySet().toArray( new String[this.options.size()] );
+        this.topOptionIndex = indexOf( this.topOption );
+        this.probabilities = new double[optionNames.length];
+        for( int i = 0; i < optionNames.length; i++ ) {
+            probabilities[i] = this.options.get( optionNames[i] ) / (double) resolution;
+        }
+
+        if( resolution == 100 ) {
+            initializeRollerArray();
+        }
+        else {
+            initializeAliasTable();
+        }
+    }
+
+    /**
+     * Create a generator that is meant to be reused: {@link #reset(int[])} gives it new percentages in place,
+     * without allocating anything. The options are named opt0, opt1 etc. as by
+     * {@link OptionServices#generate(int, int, int)}, and all the percentage starts on the first option.
+     *
+     * @param numOfOptions
+     */
+    public AnswerGenerator( int numOfOptions ) {
+        this.resolution = 100;
+        this.optionNames = new String[numOfOptions];
+        for( int i = 0; i < numOfOptions; i++ ) {
+            optionNames[i] = "opt" + i;
+        }
+        this.probabilities = new double[numOfOptions];
+        this.rollerArray = new int[100];
+        this.thresholds = new int[numOfOptions];
+        this.generated = new int[numOfOptions];
+        generated[0] = 100;
+        for( int i = 0; i < numOfOptions; i++ ) {
+            options.put( optionNames[i], generated[i] );
+        }
+        reset( generated );
+    }
+
+    /**
+     * Rolls new percentages for a generator created with {@link #AnswerGenerator(int)}, as
+     * {@link OptionServices#generate(int, int, int)} would, and resets the generator to them. Nothing is
+     * allocated.
+     *
+     * @param minDifference
+     * @param maxDifference
+     * @return this generator
+     */
+    public AnswerGenerator regenerate( int minDifference, int maxDifference ) {
+        if( generated == null ) {
+            throw new IllegalStateException( "Only generators created to be reused can be regenerated" );
+        }
+        OptionServices.generateInto( generated, minDifference, maxDifference );
+        reset( generated );
+        return this;
+    }
+
+    /**
+     * Rolls new percentages in the band of the given sampler, as
+     * {@link OptionServices#generateInto(int[], DistributionSampler)} would, for a generator created with
+     * {@link #AnswerGenerator(int)}. Nothing is allocated.
+     *
+     * @param band
+     * @return this generator
+     */
+    public AnswerGenerator regenerate( DistributionSampler band ) {
+        if( generated == null ) {
+            throw new IllegalStateException( "Only generators created to be reused can be regenerated" );
+        }
+        OptionServices.generateInto( generated, band );
+        reset( generated );
+        return this;
+    }
+
+    /**
+     * Create a generator from arbitrary weights. The weights are normalised, and drawn from exactly. The
+     * options map (and the difference) keep them rounded to parts per million.
+     *
+     * @param optionNames The names of the options
+     * @param weights The (non-negative) weight of each option, in the same order as the names.
+     */
+    public AnswerGenerator( String[] optionNames, double[] weights ) {
+        if( optionNames.length != weights.length ) {
+            throw new IllegalArgumentException( "Each option needs exactly one weight (" + optionNames.length + " options, " + weights.length + " weights given)" );
+        }
+        this.optionNames = optionNames.clone();
+        this.aliasTable = new AliasTable( weights );
+        this.resolution = WEIGHT_RESOLUTION;
+        this.options = toOptions( this.optionNames, weights, WEIGHT_RESOLUTION );
+        this.difference = OptionServices.getDifference( this.options );
+        double sum = 0;
+        for( double weight : weights ) {
+            sum += weight;
+        }
+        this.probabilities = new double[weights.length];
+        for( int i = 0; i < weights.length; i++ ) {
+            probabilities[i] = weights[i] / sum;
+        }
+
+        int top = 0;
+        for( int i = 1; i < weights.length; i++ ) {
+            if( weights[i] > weights[top] ) {
+                top = i;
+            }
+        }
+        this.topOptionIndex = top;
+        this.topOption = this.optionNames[top];
+    }
+
+    /**
+     * Gives the generator new percentages, in place and without allocating anything, e.g. as written by
+     * {@link OptionServices#generateInto(int[], int, int)}. Only generators in percentages can be reset, and
+     * only by whoever owns them: the generators of a {@link GeneratorPool} are shared.
+     *
+     * @param percentages The percentage of each option, in the order of the options. Must add up to 100.
+     * @throws IllegalArgumentException if the percentages do not fit the generator
+     */
+    public final void reset( int[] percentages ) throws IllegalArgumentException {
+        if( rollerArray == null || percentages.length != optionNames.length ) {
+            throw new IllegalArgumentException( "Only a generator in percentages can be reset, with a percentage per option" );
+        }
+        int top = 0;
+        int total = 0;
+        for( int option = 0; option < percentages.length; option++ ) {
+            int percentage = percentages[option];
+            if( percentage < 0 || total + percentage > 100 ) {
+                throw new IllegalArgumentException( "The options must add up to 100" );
+            }
+            for( int i = total; i < total + percentage; i++ ) {
+                rollerArray[i] = option;
+            }
+            total += percentage;
+            thresholds[option] = total;
+            probabilities[option] = percentage / 100d;
+            //whole percentages are cached Integers, so this does not allocate
+            options.put( optionNames[option], percentage );
+            if( percentage > percentages[top] ) {
+                top = option;
+            }
+        }
+        if( total != 100 ) {
+            throw new IllegalArgumentException( "The options must add up to 100 (" + total + " given)" );
+        }
+        this.topOptionIndex = top;
+        this.topOption = optionNames[top];
+        this.difference = OptionServices.getDifference( percentages );
+    }
+
+    /**
+     * Rounds the weights to integers that add up to exactly the resolution (largest remainder first).
+     */
+    private static Map<String, Integer> toOptions( String[] optionNames, double[] weights, int resolution ) {
+        double sum = 0;
+        for( double weight : weights ) {
+            sum += weight;
+        }
+        int[] rounded = new int[weights.length];
+        double[] remainders = new double[weights.length];
+        int left = resolution;
+        for( int i = 0; i < weights.length; i++ ) {
+            double exact = weights[i] * resolution / sum;
+            rounded[i] = (int) Math.floor( exact );
+            remainders[i] = exact - rounded[i];
+            left -= rounded[i];
+        }
+        for( ; left > 0; left-- ) {
+            int largest = 0;
+            for( int i = 1; i < remainders.length; i++ ) {
+                if( remainders[i] > remainders[largest] ) {
+                    largest = i;
+                }
+            }
+            rounded[largest]++;
+            remainders[largest] = -1;
+        }
 
-        initializeRollerArray();
+        Map<String, Integer> options = new LinkedHashMap<>();
+        for( int i = 0; i < optionNames.length; i++ ) {
+            options.put( optionNames[i], rounded[i] );
+        }
+        return options;
     }
 
+    /**
+     * @return The difference between the two most likely options, in units of {@link #getResolution()}
+     * (percentages by default).
+     */
     public int getDifference() {
         return difference;
     }
 
+    /**
+     * @return What the values of the options add up to. 100 for percentages, 1000 for per-mille etc.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
     public String getTopOption() {
         return topOption;
     }
 
+    /**
+     * @return The index of the top option, as drawn by {@link #drawIndex()}.
+     */
+    public int getTopOptionIndex() {
+        return topOptionIndex;
+    }
+
+    /**
+     * @param index The index of an option, as drawn by {@link #drawIndex()}.
+     * @return The name of the option
+     */
+    public String getOptionName( int index ) {
+        return optionNames[index];
+    }
+
+    /**
+     * @param option The name of an option
+     * @return The index of the option, -1 if the generator does not have this option.
+     */
+    public int indexOf( String option ) {
+        for( int i = 0; i < optionNames.length; i++ ) {
+            if( optionNames[i].equals( option ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Creates the roller array based on the options. This the array upon which we later roll the dice to
      * decide what answer to generate.
      */
     private void initializeRollerArray() {
+        rollerArray = new int[100];
+        thresholds = new int[optionNames.length];
         int totalPercentage = 0;
-        for( Map.Entry<String, Integer> entry : options.entrySet() ) {
-            String option = entry.getKey();
-            Integer percentage = entry.getValue();
+        for( int option = 0; option < optionNames.length; option++ ) {
+            Integer percentage = options.get( optionNames[option] );
 
             for( int i = totalPercentage; i < totalPercentage + percentage; i++ ) {
                 rollerArray[i] = option;
             }
             totalPercentage += percentage;
+            thresholds[option] = totalPercentage;
         }
     }
 
+    /**
+     * Creates the alias table based on the options, for options that are not given in percentages.
+     */
+    private void initializeAliasTable() {
+        int total = 0;
+        double[] weights = new double[optionNames.length];
+        for( int option = 0; option < optionNames.length; option++ ) {
+            weights[option] = options.get( optionNames[option] );
+            total += weights[option];
+        }
+        if( total != resolution ) {
+            throw new IllegalArgumentException( "The options must add up to " + resolution + " (" + total + " given)" );
+        }
+        aliasTable = new AliasTable( weights );
+    }
+
     public String draw() {
+        return optionNames[drawIndex()];
+    }
+
+    /**
+     * Draws an answer, identified by its index rather than its name. Use this with a {@link VoteCounter} to
+     * avoid looking up option names in the simulation loops.
+     *
+     * @return The index of the drawn option.
+     */
+    public int drawIndex() {
         //we use a custom singleton Random so we can keep a copy of all the rolls,
         //to check that the distribution of rolls is fair.
         //or use the local random for performance
+        if( aliasTable != null ) {
+            return aliasTable.sample( LoggedRandom.getInstance().roll( aliasTable.getRollBound() ) );
+        }
         int nextInt = LoggedRandom.getInstance().roll( 100 );
         return rollerArray[nextInt];
     }
 
+    /**
+     * Draws an answer and adds it straight to the given votes.
+     *
+     * @param votes A counter with (at least) as many options as this generator.
+     * @return The index of the drawn option.
+     */
+    public int drawInto( VoteCounter votes ) {
+        int option = drawIndex();
+        votes.add( option );
+        return option;
+    }
+
+    /**
+     * Draws n answers one by one, as n calls of {@link #drawIndex()} would, and adds them to the given votes.
+     * The rolls are made in blocks and counted against the ranges of the options in the roller array, with the
+     * Vector API where it is available (see {@link BatchDraws}). Generators that are not in percentages draw
+     * one answer at a time.<br><br>Unlike {@link #drawCounts(int, VoteCounter)}, this rolls every answer, so
+     * the rolls are logged as usual.
+     *
+     * @param n How many answers to draw
+     * @param votes A counter with (at least) as many options as this generator.
+     */
+    public void drawBatch( int n, VoteCounter votes ) {
+        if( aliasTable != null ) {
+            for( int i = 0; i < n; i++ ) {
+                drawInto( votes );
+            }
+            return;
+        }
+        BatchDraws.draw( n, rollerArray, thresholds, votes );
+    }
+
+    /**
+     * Draws n answers at once, and returns only how many times each option came out. The counts are sampled
+     * directly from the multinomial distribution, one binomial per option: each option gets its share of the
+     * votes that the options before it did not take. This takes about the same time for any n.
+     *
+     * @param n How many answers to draw
+     * @return The number of answers each option got, indexed by option.
+     */
+    public int[] drawCounts( int n ) {
+        int[] counts = new int[optionNames.length];
+        int left = n;
+        double probabilityLeft = 1;
+        for( int option = 0; option < counts.length - 1 && left > 0; option++ ) {
+            counts[option] = BinomialSampler.sample( left, probabilities[option] / probabilityLeft );
+            left -= counts[option];
+            probabilityLeft -= probabilities[option];
+        }
+        counts[counts.length - 1] += left;
+        return counts;
+    }
+
+    /**
+     * Draws n answers at once (see {@link #drawCounts(int)}) and adds them to the given votes.
+     *
+     * @param n How many answers to draw
+     * @param votes A counter with (at least) as many options as this generator.
+     */
+    public void drawCounts( int n, VoteCounter votes ) {
+        int left = n;
+        double probabilityLeft = 1;
+        for( int option = 0; option < optionNames.length - 1 && left > 0; option++ ) {
+            int count = BinomialSampler.sample( left, probabilities[option] / probabilityLeft );
+            if( count > 0 ) {
+                votes.add( option, count );
+                left -= count;
+            }
+            probabilityLeft -= probabilities[option];
+        }
+        if( left > 0 ) {
+            votes.add( optionNames.length - 1, left );
+        }
+    }
+
+    /**
+     * @param index The index of an option
+     * @return The probability that the option is drawn.
+     */
+    public double getProbability( int index ) {
+        return probabilities[index];
+    }
+
     public int size() {
         return options.size();
     }
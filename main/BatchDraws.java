@@ -0,0 +1,134 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import minimumAnswers.libraries.VoteCounter;
+
+/**
+ * Draws answers from a roller array in blocks (see {@link AnswerGenerator#drawBatch(int, VoteCounter)}). A block
+ * of rolls is made at once, and only the number of rolls that fall in the range of each option is kept.<br><br>
+ * With the Vector API (VectorDraws, in the vector/ source root) each option is counted with a single compare of
+ * a whole vector of rolls against where its range ends. The Vector API is an incubator module of the JDK, so
+ * VectorDraws is only compiled, and only loaded, with {@code --add-modules jdk.incubator.vector}. Otherwise, and
+ * for generators with too many options for the compares to pay off, the rolls are counted one by one, straight
+ * from the roller array.
+ *
+ * @author Andreas Lianos
+ */
+final class BatchDraws {
+
+    /**
+     * If set to true, blocks are counted with the Vector API whenever it is available. Set to false to always
+     * count them one by one.
+     */
+    private static final boolean VECTOR_DRAWS = true;
+    /**
+     * Every option costs a compare per vector of rolls, so above this many options counting the rolls one by
+     * one is faster.
+     */
+    private static final int VECTOR_MAX_OPTIONS = 8;
+    /**
+     * How many rolls are made at once.
+     */
+    private static final int BLOCK_SIZE = 1024;
+    /**
+     * Counts blocks with the Vector API, null if it is not available.
+     */
+    private static final BlockCounter VECTOR_COUNTER = loadVectorCounter();
+    private static final boolean VECTOR_AVAILABLE = (VECTOR_COUNTER != null);
+    /**
+     * The rolls of each thread, and the counts of the options they fell in. Generators may be shared between
+     * threads, so these cannot belong to a generator.
+     */
+    private static final ThreadLocal<int[]> ROLLS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[BLOCK_SIZE];
+        }
+    };
+    private static final ThreadLocal<int[]> COUNTS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[VECTOR_MAX_OPTIONS];
+        }
+    };
+
+    private BatchDraws() {
+    }
+
+    /**
+     * Loads VectorDraws by name, so that nothing else needs the incubator module to compile.
+     *
+     * @return The counter, null if the module or the class is not there (or the vector draws are switched off).
+     */
+    private static BlockCounter loadVectorCounter() {
+        if( !VECTOR_DRAWS || !ModuleLayer.boot().findModule( "jdk.incubator.vector" ).isPresent() ) {
+            return null;
+        }
+        try {
+            return (BlockCounter) Class.forName( "minimumAnswers.main.VectorDraws" ).getDeclaredConstructor().newInstance();
+        }
+        catch( ReflectiveOperationException | LinkageError e ) {
+            //compiled without the vector/ source root
+            return null;
+        }
+    }
+
+    /**
+     * @return true if blocks are counted with the Vector API.
+     */
+    static boolean isVectorised() {
+        return VECTOR_AVAILABLE;
+    }
+
+    /**
+     * Draws n answers from the roller array and adds them to the votes.
+     *
+     * @param n How many answers to draw
+     * @param rollerArray The option of each percentage
+     * @param thresholds Where the range of each option ends in the roller array
+     * @param votes
+     */
+    static void draw( int n, int[] rollerArray, int[] thresholds, VoteCounter votes ) {
+        int numOfOptions = thresholds.length;
+        int[] rolls = ROLLS.get();
+        int[] counts = COUNTS.get();
+        if( counts.length < numOfOptions ) {
+            counts = new int[numOfOptions];
+            COUNTS.set( counts );
+        }
+        boolean vectorised = VECTOR_AVAILABLE && numOfOptions <= VECTOR_MAX_OPTIONS;
+        LoggedRandom random = LoggedRandom.getInstance();
+        for( int drawn = 0; drawn < n; drawn += BLOCK_SIZE ) {
+            int length = Math.min( BLOCK_SIZE, n - drawn );
+            random.roll( rolls, length, 100 );
+            int counted = (vectorised ? VECTOR_COUNTER.count( rolls, length, thresholds, counts ) : 0);
+            for( int i = counted; i < length; i++ ) {
+                counts[rollerArray[rolls[i]]]++;
+            }
+        }
+        for( int option = 0; option < numOfOptions; option++ ) {
+            if( counts[option] > 0 ) {
+                votes.add( option, counts[option] );
+                counts[option] = 0;
+            }
+        }
+    }
+}
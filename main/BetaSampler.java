@@ -0,0 +1,96 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * Samples beta distributed numbers, as the ratio of two gamma distributed numbers. The gammas are sampled with
+ * Marsaglia and Tsang's method, in (expected) constant time for any shape. The uniform numbers come from
+ * {@link LoggedRandom#rollDouble()}.
+ *
+ * @author Andreas Lianos
+ */
+public final class BetaSampler {
+
+    private BetaSampler() {
+    }
+
+    /**
+     * Samples a number from the beta distribution with the given shapes.
+     *
+     * @param a The first shape, above 0
+     * @param b The second shape, above 0
+     * @return A number between [0-1]
+     */
+    public static double sample( double a, double b ) {
+        double x = sampleGamma( a );
+        double y = sampleGamma( b );
+        if( x + y == 0 ) {
+            //both underflowed, which only happens for tiny shapes: fall back to the mean
+            return a / (a + b);
+        }
+        return x / (x + y);
+    }
+
+    /**
+     * G. Marsaglia and W. Tsang, "A simple method for generating gamma variables" (2000). Shapes below 1 are
+     * sampled with shape + 1, and scaled down by a uniform number to the power of 1/shape.
+     */
+    private static double sampleGamma( double shape ) {
+        LoggedRandom random = LoggedRandom.getInstance();
+        if( shape < 1 ) {
+            return sampleGamma( shape + 1 ) * Math.exp( Math.log( 1 - random.rollDouble() ) / shape );
+        }
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt( 9 * d );
+        while( true ) {
+            double x;
+            double v;
+            do {
+                x = sampleNormal( random );
+                v = 1 + c * x;
+            } while( v <= 0 );
+            v = v * v * v;
+            double u = random.rollDouble();
+            double xx = x * x;
+            if( u < 1 - 0.0331 * xx * xx ) {
+                return d * v;
+            }
+            if( Math.log( u ) < 0.5 * xx + d * (1 - v + Math.log( v )) ) {
+                return d * v;
+            }
+        }
+    }
+
+    /**
+     * Marsaglia's polar method. Only one of the two numbers is used, so that nothing has to be kept between
+     * calls.
+     */
+    private static double sampleNormal( LoggedRandom random ) {
+        double u;
+        double v;
+        double s;
+        do {
+            u = 2 * random.rollDouble() - 1;
+            v = 2 * random.rollDouble() - 1;
+            s = u * u + v * v;
+        } while( s >= 1 || s == 0 );
+        return u * Math.sqrt( -2 * Math.log( s ) / s );
+    }
+}
@@ -0,0 +1,186 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * Samples binomially distributed numbers, in (expected) constant time regardless of the number of trials. Small
+ * means are sampled by inversion, bigger ones by Hormann's BTRD (transformed rejection with decomposition).
+ * The uniform numbers come from {@link LoggedRandom#rollDouble()}.
+ *
+ * @author Andreas Lianos
+ */
+public final class BinomialSampler {
+
+    /**
+     * Below this mean, inversion is faster than rejection.
+     */
+    private static final double MIN_REJECTION_MEAN = 10;
+    /**
+     * The error of the Stirling approximation of ln(k!), for k in [0-9].
+     */
+    private static final double[] STIRLING_CORRECTIONS = {
+        0.08106146679532726, 0.04134069595540929, 0.02767792568499834, 0.02079067210376509,
+        0.01664469118982119, 0.01387612882307075, 0.01189670994589177, 0.01041126526197209,
+        0.009255462182712733, 0.008330563433362871
+    };
+
+    private BinomialSampler() {
+    }
+
+    /**
+     * Samples the number of successes in n trials, each with probability p.
+     *
+     * @param n The number of trials
+     * @param p The probability of success of each trial, between [0-1]
+     * @return A number between [0-n]
+     */
+    public static int sample( int n, double p ) {
+        if( n <= 0 || !(p > 0) ) {
+            return 0;
+        }
+        if( p >= 1 ) {
+            return n;
+        }
+        //sample the less likely outcome, it keeps the mean small
+        if( p > 0.5 ) {
+            return n - sample( n, 1 - p );
+        }
+        if( n * p < MIN_REJECTION_MEAN ) {
+            return sampleByInversion( n, p );
+        }
+        return sampleByRejection( n, p );
+    }
+
+    /**
+     * Walks up the probabilities from 0 until the uniform number is used up. Takes about n*p steps.
+     */
+    private static int sampleByInversion( int n, double p ) {
+        LoggedRandom random = LoggedRandom.getInstance();
+        double q = 1 - p;
+        double s = p / q;
+        double a = (n + 1) * s;
+        double start = Math.pow( q, n );
+        while( true ) {
+            double r = start;
+            double u = random.rollDouble();
+            int x = 0;
+            while( u > r ) {
+                u -= r;
+                x++;
+                if( x > n ) {
+                    break; //rounding errors, try again
+                }
+                r *= a / x - s;
+            }
+            if( x <= n ) {
+                return x;
+            }
+        }
+    }
+
+    /**
+     * BTRD, as published by W. Hormann, "The generation of binomial random variates" (1993). Needs n*p >= 10
+     * and p <= 0.5.
+     */
+    private static int sampleByRejection( int n, double p ) {
+        LoggedRandom random = LoggedRandom.getInstance();
+        double q = 1 - p;
+        double npq = n * p * q;
+        double spq = Math.sqrt( npq );
+        double b = 1.15 + 2.53 * spq;
+        double a = -0.0873 + 0.0248 * b + 0.01 * p;
+        double c = n * p + 0.5;
+        double alpha = (2.83 + 5.1 / b) * spq;
+        double vr = 0.92 - 4.2 / b;
+        double urvr = 0.86 * vr;
+        int m = (int) Math.floor( (n + 1) * p );
+        double r = p / q;
+        double nr = (n + 1) * r;
+
+        while( true ) {
+            double v = random.rollDouble();
+            double u;
+            if( v <= urvr ) {
+                //most samples are accepted straight away, from the triangle under the hat
+                u = v / vr - 0.43;
+                return (int) Math.floor( (2 * a / (0.5 - Math.abs( u )) + b) * u + c );
+            }
+            if( v >= vr ) {
+                u = random.rollDouble() - 0.5;
+            }
+            else {
+                u = v / vr - 0.93;
+                u = Math.signum( u ) * 0.5 - u;
+                v = random.rollDouble() * vr;
+            }
+
+            double us = 0.5 - Math.abs( u );
+            int k = (int) Math.floor( (2 * a / us + b) * u + c );
+            if( k < 0 || k > n ) {
+                continue;
+            }
+            v = v * alpha / (a / (us * us) + b);
+            int km = Math.abs( k - m );
+            if( km <= 15 ) {
+                //close to the mode, work out the ratio of the probabilities recursively
+                double f = 1;
+                if( m < k ) {
+                    for( int i = m + 1; i <= k; i++ ) {
+                        f *= nr / i - r;
+                    }
+                }
+                else if( m > k ) {
+                    for( int i = k + 1; i <= m; i++ ) {
+                        v *= nr / i - r;
+                    }
+                }
+                if( v <= f ) {
+                    return k;
+                }
+                continue;
+            }
+
+            //squeeze with the normal approximation, then compare with the exact log ratio
+            v = Math.log( v );
+            double rho = (km / npq) * (((km / 3.0 + 0.625) * km + 1.0 / 6) / npq + 0.5);
+            double t = -km * (double) km / (2 * npq);
+            if( v < t - rho ) {
+                return k;
+            }
+            if( v > t + rho ) {
+                continue;
+            }
+            int nm = n - m + 1;
+            double h = (m + 0.5) * Math.log( (m + 1) / (r * nm) ) + stirlingCorrection( m ) + stirlingCorrection( n - m );
+            int nk = n - k + 1;
+            if( v <= h + (n + 1) * Math.log( (double) nm / nk ) + (k + 0.5) * Math.log( nk * r / (k + 1) ) - stirlingCorrection( k ) - stirlingCorrection( n - k ) ) {
+                return k;
+            }
+        }
+    }
+
+    private static double stirlingCorrection( int k ) {
+        if( k < STIRLING_CORRECTIONS.length ) {
+            return STIRLING_CORRECTIONS[k];
+        }
+        double kk = 1.0 / ((k + 1.0) * (k + 1.0));
+        return (1.0 / 12 - (1.0 / 360 - kk / 1260) * kk) / (k + 1);
+    }
+}
@@ -0,0 +1,38 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * Counts how many rolls of a block fall in the range of each option, for {@link BatchDraws}. Implementations
+ * may count only part of the block (e.g. whole vectors of rolls), and leave the rest to be counted one by one.
+ *
+ * @author Andreas Lianos
+ */
+interface BlockCounter {
+
+    /**
+     * @param rolls
+     * @param length How many rolls there are, from the start of the array
+     * @param thresholds Where the range of each option ends
+     * @param counts Where to add the count of each option
+     * @return How many rolls, from the start of the array, were counted.
+     */
+    int count( int[] rolls, int length, int[] thresholds, int[] counts );
+}
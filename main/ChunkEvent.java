@@ -0,0 +1,45 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event spanning the run of a chunk of iterations of a test.
+ *
+ * @author Andreas Lianos
+ */
+@Name( "minimumAnswers.Chunk" )
+@Label( "Chunk of iterations" )
+@Category( "minimumAnswers" )
+@Description( "The run of a chunk of iterations of a test" )
+public class ChunkEvent extends Event {
+
+    @Label( "Chunk" )
+    public int chunk;
+    @Label( "Iterations" )
+    public long iterations;
+    @Label( "Votes drawn" )
+    public long votes;
+}
@@ -0,0 +1,37 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * A test that can estimate how long it takes to run, so that the {@link SweepScheduler} can start the
+ * expensive tests first.
+ *
+ * @author Andreas Lianos
+ */
+public interface CostEstimate {
+
+    /**
+     * Estimates the cost of running the whole test. Only the ratios between the costs of the tests matter;
+     * the unit is roughly one roll of the random generator.
+     *
+     * @return
+     */
+    double estimateCost();
+}
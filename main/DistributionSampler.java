@@ -0,0 +1,325 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Samples the distributions of {@link OptionServices#generate(int, int, int)} directly, without rolling
+ * distributions until one falls within the requested difference.<br><br>The options are rolled one after
+ * the other, each between 0 and whatever percentage is left. Whether the distribution ends up within the
+ * difference only depends on what is left and on the two largest options so far, so the probability of
+ * ending up within the difference can be worked out for every such state, from the last option backwards.
+ * Each option is then rolled in proportion to the probability of ending up within the difference after it.
+ * The result has exactly the distribution of rolling and rejecting, but every roll is kept.<br><br>The tables
+ * depend on the number of options and the difference, and take a while to build (around a tenth of a second,
+ * and half a megabyte, per option). So a sampler is only a cheap handle on its band of differences until its
+ * table is needed: {@link OptionServices} keeps rolling and rejecting in bands that accept enough rolls, and
+ * samples the others (see {@link #isWorthSampling()}). The choice only depends on the band, never on what ran
+ * before, so a random stream always rolls the same distributions.
+ *
+ * @author Andreas Lianos
+ */
+public final class DistributionSampler {
+
+    /**
+     * Bands that are estimated to accept at least this share of the rolls are always rolled and rejected.
+     */
+    public static final double MIN_ACCEPTANCE_RATE = 0.2;
+    /**
+     * How many unrestricted distributions are rolled to estimate the acceptance rates of a number of options.
+     */
+    private static final int ESTIMATE_SAMPLES = 20000;
+    /**
+     * The samplers are only handles until their tables are built, so all of them are kept: a sweep goes
+     * through every band many times.
+     */
+    private static final ConcurrentMap<Integer, DistributionSampler> CACHE = new ConcurrentHashMap<>();
+    /**
+     * For each number of options, the estimated probability of each difference (or less) when rolling without
+     * any restriction.
+     */
+    private static final AtomicReferenceArray<double[]> ESTIMATES = new AtomicReferenceArray<>( 101 );
+    /**
+     * The sampler each thread asked for last. A simulation asks for the same one in every iteration, and this
+     * answers without building a key or locking the cache.
+     */
+    private static final ThreadLocal<DistributionSampler> LAST = new ThreadLocal<>();
+    private final int numOfOptions;
+    private final int minDifference;
+    private final int maxDifference;
+    /**
+     * The probability of ending up within the difference, indexed by [options left][percentage left][second
+     * largest option][largest option - second largest option]. Only the states where the options left can
+     * still change the two largest options are kept (second largest option < percentage left), and only for
+     * two or more options left.
+     */
+    private volatile double[][][][] table;
+    private double acceptanceRate;
+    private final double estimatedAcceptanceRate;
+
+    private DistributionSampler( int numOfOptions, int minDifference, int maxDifference ) {
+        this.numOfOptions = numOfOptions;
+        this.minDifference = minDifference;
+        this.maxDifference = maxDifference;
+        this.estimatedAcceptanceRate = estimateAcceptanceRate( numOfOptions, minDifference, maxDifference );
+    }
+
+    /**
+     * Builds the table, if it has not been built yet.
+     */
+    private double[][][][] getTable() {
+        double[][][][] built = table;
+        if( built == null ) {
+            synchronized( this ) {
+                built = table;
+                if( built == null ) {
+                    built = new double[numOfOptions + 1][][][];
+                    for( int k = 2; k <= numOfOptions; k++ ) {
+                        fillTable( built, k );
+                    }
+                    acceptanceRate = probability( built, numOfOptions, 100, 0, 0 );
+                    table = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Returns the sampler of distributions with the given options and difference. Samplers are cached, and
+     * only build their tables when they are first needed, so asking for one is cheap.
+     *
+     * @param numOfOptions Between [2-100]
+     * @param minDifference Between [0-100]
+     * @param maxDifference Between [minDifference-100]
+     * @return
+     */
+    public static DistributionSampler getInstance( int numOfOptions, int minDifference, int maxDifference ) {
+        DistributionSampler last = LAST.get();
+        if( last != null && last.numOfOptions == numOfOptions && last.minDifference == minDifference
+                && last.maxDifference == maxDifference ) {
+            return last;
+        }
+        if( numOfOptions < 2 || numOfOptions > 100 ) {
+            throw new IllegalArgumentException( "The possible number of options must be between [2-100] (" + numOfOptions + " given)" );
+        }
+        DistributionSampler sampler = CACHE.computeIfAbsent( (numOfOptions * 101 + minDifference) * 101 + maxDifference,
+                key -> new DistributionSampler( numOfOptions, minDifference, maxDifference ) );
+        LAST.set( sampler );
+        return sampler;
+    }
+
+    /**
+     * Estimates the acceptance rate of a band from a sample of unrestricted distributions. The sample is rolled
+     * once for each number of options, on its own random stream (so it does not change the rolls of the tests),
+     * which makes the estimate of any band cheap.
+     *
+     * @param numOfOptions Between [2-100]
+     * @param minDifference
+     * @param maxDifference
+     * @return
+     */
+    public static double estimateAcceptanceRate( int numOfOptions, int minDifference, int maxDifference ) {
+        double[] cumulative = ESTIMATES.get( numOfOptions );
+        if( cumulative == null ) {
+            SplittableRandom random = new SplittableRandom( numOfOptions );
+            int[] percentages = new int[numOfOptions];
+            cumulative = new double[101];
+            for( int sample = 0; sample < ESTIMATE_SAMPLES; sample++ ) {
+                int left = 100;
+                for( int i = 0; i < numOfOptions - 1; i++ ) {
+                    percentages[i] = (left > 0 ? random.nextInt( left + 1 ) : 0);
+                    left -= percentages[i];
+                }
+                percentages[numOfOptions - 1] = left;
+                cumulative[OptionServices.getDifference( percentages )]++;
+            }
+            for( int difference = 0; difference <= 100; difference++ ) {
+                cumulative[difference] = (difference > 0 ? cumulative[difference - 1] : 0) + cumulative[difference] / ESTIMATE_SAMPLES;
+            }
+            ESTIMATES.compareAndSet( numOfOptions, null, cumulative );
+        }
+        return cumulative[maxDifference] - (minDifference > 0 ? cumulative[minDifference - 1] : 0);
+    }
+
+    /**
+     * @return The probability that a distribution rolled without any restriction falls within the difference
+     * of this sampler. This is the acceptance rate of rolling and rejecting. This is exact, so it builds the
+     * table (see {@link #getEstimatedAcceptanceRate()}).
+     */
+    public double getAcceptanceRate() {
+        getTable();
+        return acceptanceRate;
+    }
+
+    /**
+     * @return An estimate of {@link #getAcceptanceRate()}, that does not need the table.
+     */
+    public double getEstimatedAcceptanceRate() {
+        return estimatedAcceptanceRate;
+    }
+
+    /**
+     * Whether to sample a distribution of this band, rather than to roll and reject: when the band is estimated
+     * to accept fewer than {@link #MIN_ACCEPTANCE_RATE} of the rolls (including bands where none were seen, the
+     * table then shows whether there are any at all). This only depends on the band, not on whether the table
+     * happens to be built already, so the same stream always rolls the same way.
+     *
+     * @return
+     */
+    public boolean isWorthSampling() {
+        return estimatedAcceptanceRate < MIN_ACCEPTANCE_RATE;
+    }
+
+    public int getNumOfOptions() {
+        return numOfOptions;
+    }
+
+    public int getMinDifference() {
+        return minDifference;
+    }
+
+    public int getMaxDifference() {
+        return maxDifference;
+    }
+
+    /**
+     * Samples a distribution, without rejecting any.
+     *
+     * @return The percentages of the options, in the order they are rolled in {@link OptionServices}.
+     * @throws IllegalArgumentException if no distribution can have the difference of this sampler.
+     */
+    public int[] sample() throws IllegalArgumentException {
+        int[] percentages = new int[numOfOptions];
+        sampleInto( percentages );
+        return percentages;
+    }
+
+    /**
+     * Samples a distribution into the given array, without allocating anything.
+     *
+     * @param percentages Where to write the percentages of the options, in the order they are rolled in
+     * {@link OptionServices}. Must have a slot per option.
+     * @throws IllegalArgumentException if no distribution can have the difference of this sampler.
+     */
+    public void sampleInto( int[] percentages ) throws IllegalArgumentException {
+        double[][][][] table = getTable();
+        if( acceptanceRate <= 0 ) {
+            throw new IllegalArgumentException( "No distribution of " + numOfOptions + " options can have a difference between " + minDifference + " and " + maxDifference );
+        }
+        LoggedRandom random = LoggedRandom.getInstance();
+        int left = 100;
+        int first = 0;
+        int second = 0;
+        for( int i = 0; i < numOfOptions - 1; i++ ) {
+            int optionsLeft = numOfOptions - i;
+            int percentage;
+            if( left <= second ) {
+                //nothing can change the two largest options anymore, roll as usual
+                percentage = (left > 0 ? random.roll( left + 1 ) : 0);
+            }
+            else {
+                //the weights add up to the probability of this state, times (left + 1)
+                double target = random.rollDouble() * probability( table, optionsLeft, left, first, second ) * (left + 1);
+                percentage = 0;
+                double sum = nextProbability( table, optionsLeft, left, first, second, 0 );
+                while( sum <= target && percentage < left ) {
+                    percentage++;
+                    sum += nextProbability( table, optionsLeft, left, first, second, percentage );
+                }
+            }
+            percentages[i] = percentage;
+            left -= percentage;
+            if( percentage > first ) {
+                second = first;
+                first = percentage;
+            }
+            else if( percentage > second ) {
+                second = percentage;
+            }
+        }
+        percentages[numOfOptions - 1] = left;
+    }
+
+    /**
+     * @return The probability of ending within the difference, after rolling the given percentage in the given
+     * state.
+     */
+    private double nextProbability( double[][][][] table, int optionsLeft, int left, int first, int second, int percentage ) {
+        if( percentage > first ) {
+            return probability( table, optionsLeft - 1, left - percentage, percentage, first );
+        }
+        else if( percentage > second ) {
+            return probability( table, optionsLeft - 1, left - percentage, first, percentage );
+        }
+        return probability( table, optionsLeft - 1, left - percentage, first, second );
+    }
+
+    /**
+     * The probability of ending up within the difference.
+     *
+     * @param optionsLeft How many options are still to get a percentage (including the last one)
+     * @param left The percentage that is left for them
+     * @param first The largest option so far
+     * @param second The second largest option so far
+     * @return
+     */
+    private double probability( double[][][][] table, int optionsLeft, int left, int first, int second ) {
+        if( left <= second ) {
+            return withinDifference( first - second );
+        }
+        else if( optionsLeft == 1 ) {
+            //the last option gets what is left
+            return withinDifference( left > first ? left - first : first - left );
+        }
+        return table[optionsLeft][left][second][first - second];
+    }
+
+    private double withinDifference( int difference ) {
+        return (difference >= minDifference && difference <= maxDifference ? 1 : 0);
+    }
+
+    /**
+     * Fills the probabilities of all the states with k options left, from those with k-1 options left.
+     */
+    private void fillTable( double[][][][] table, int k ) {
+        table[k] = new double[101][][];
+        for( int left = 1; left <= 100; left++ ) {
+            //the two largest options so far add up to at most what is not left
+            int maxSecond = Math.min( left - 1, (100 - left) / 2 );
+            table[k][left] = new double[maxSecond + 1][];
+            for( int second = 0; second <= maxSecond; second++ ) {
+                double[] row = new double[100 - left - 2 * second + 1];
+                for( int first = second; first <= 100 - left - second; first++ ) {
+                    double sum = 0;
+                    for( int percentage = 0; percentage <= left; percentage++ ) {
+                        sum += nextProbability( table, k, left, first, second, percentage );
+                    }
+                    row[first - second] = sum / (left + 1);
+                }
+                table[k][left][second] = row;
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import minimumAnswers.libraries.AliasTable;
+
+/**
+ * A shared, read-only pool of ready made generators for the distributions of
+ * {@link OptionServices#generate(int, int, int)}, so that the tests can pick a generator rather than build a
+ * new one in every iteration.<br><br>A pool is exact when the distributions within the difference are few
+ * enough to build them all: each one is then picked with the probability
+ * {@link OptionServices#generate(int, int, int)} would give it, to double precision (see
+ * {@link AliasTable#sample(int, double)}). Otherwise a pool can be sampled: it holds a
+ * fixed number of generators from {@link OptionServices#generate(int, int, int)}, picked uniformly. A sampled
+ * pool is only a sample of the distributions, so its results carry the error of that sample on top of the
+ * error of the test.<br><br>Pools are cached, and the least recently used are dropped when the pools hold
+ * more than {@value #MAX_POOLED_GENERATORS} generators in total.
+ *
+ * @author Andreas Lianos
+ */
+public final class GeneratorPool {
+
+    /**
+     * The most distributions an exact pool builds.
+     */
+    public static final int MAX_EXACT_SIZE = 20000;
+    /**
+     * How many generators a sampled pool holds.
+     */
+    public static final int SAMPLED_SIZE = 16384;
+    /**
+     * The most generators all the cached pools hold together.
+     */
+    public static final int MAX_POOLED_GENERATORS = 1 << 17;
+    /**
+     * Looking for the distributions of an exact pool is only attempted when there are no more than this many
+     * distributions without the restriction of the difference (up to 5 options).
+     */
+    private static final long MAX_ENUMERATED = 5000000;
+    private static final Map<String, GeneratorPool> CACHE = new LinkedHashMap<>( 16, 0.75f, true );
+    /**
+     * The differences that cannot have an exact pool, so that they are not enumerated again. Guarded by the
+     * CACHE lock.
+     */
+    private static final Set<String> NOT_EXACT = new HashSet<>();
+    private static int pooledGenerators = 0;
+    private final AnswerGenerator[] generators;
+    /**
+     * Picks the generators of an exact pool with their probabilities. Null for sampled pools.
+     */
+    private final AliasTable probabilities;
+
+    private GeneratorPool( AnswerGenerator[] generators, AliasTable probabilities ) {
+        this.generators = generators;
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Returns the pool for the given options and difference. An exact pool is returned whenever possible.
+     *
+     * @param numOfOptions Between [2-100]
+     * @param minDifference Between [0-100]
+     * @param maxDifference Between [minDifference-100]
+     * @param allowSampled If true, a sampled pool is returned when an exact one is not possible.
+     * @return The pool, or null if an exact pool is not possible and sampled pools are not allowed.
+     */
+    public static GeneratorPool getInstance( int numOfOptions, int minDifference, int maxDifference, boolean allowSampled ) {
+        String key = numOfOptions + ":" + minDifference + ":" + maxDifference;
+        boolean notExact;
+        synchronized( CACHE ) {
+            GeneratorPool pool = CACHE.get( key );
+            if( pool != null ) {
+                return (pool.isExact() || allowSampled ? pool : null);
+            }
+            notExact = NOT_EXACT.contains( key );
+        }
+        if( notExact && !allowSampled ) {
+            return null;
+        }
+
+        //build outside the lock. Two threads might build the same pool, but only one is kept.
+        GeneratorPool pool = (notExact ? null : createExact( numOfOptions, minDifference, maxDifference ));
+        if( pool == null && !notExact ) {
+            synchronized( CACHE ) {
+                NOT_EXACT.add( key );
+            }
+        }
+        if( pool == null && allowSampled ) {
+            AnswerGenerator[] generators = new AnswerGenerator[SAMPLED_SIZE];
+            for( int i = 0; i < generators.length; i++ ) {
+                generators[i] = new AnswerGenerator( OptionServices.generate( numOfOptions, minDifference, maxDifference ) );
+            }
+            pool = new GeneratorPool( generators, null );
+        }
+        if( pool == null ) {
+            return null;
+        }
+
+        synchronized( CACHE ) {
+            GeneratorPool cached = CACHE.get( key );
+            if( cached != null ) {
+                return cached;
+            }
+            CACHE.put( key, pool );
+            pooledGenerators += pool.size();
+            Iterator<GeneratorPool> eldest = CACHE.values().iterator();
+            while( pooledGenerators > MAX_POOLED_GENERATORS && CACHE.size() > 1 ) {
+                pooledGenerators -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Lists every distribution within the difference, with the probability of rolling it.
+     *
+     * @return The exact pool, or null if there are too many distributions.
+     */
+    private static GeneratorPool createExact( int numOfOptions, int minDifference, int maxDifference ) {
+        //(100 + numOfOptions - 1) choose (numOfOptions - 1) ways to split 100 in numOfOptions
+        double compositions = 1;
+        for( int i = 1; i < numOfOptions; i++ ) {
+            compositions = compositions * (100 + i) / i;
+        }
+        if( compositions > MAX_ENUMERATED ) {
+            return null;
+        }
+
+        List<int[]> distributions = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        if( !enumerate( new int[numOfOptions], 0, 100, 1, minDifference, maxDifference, distributions, weights ) ) {
+            return null;
+        }
+        if( distributions.isEmpty() ) {
+            throw new IllegalArgumentException( "No distribution of " + numOfOptions + " options can have a difference between " + minDifference + " and " + maxDifference );
+        }
+
+        AnswerGenerator[] generators = new AnswerGenerator[distributions.size()];
+        double[] probabilities = new double[distributions.size()];
+        for( int i = 0; i < generators.length; i++ ) {
+            Map<String, Integer> options = new HashMap<>();
+            int[] percentages = distributions.get( i );
+            for( int option = 0; option < percentages.length; option++ ) {
+                options.put( "opt" + option, percentages[option] );
+            }
+            generators[i] = new AnswerGenerator( options );
+            probabilities[i] = weights.get( i );
+        }
+        return new GeneratorPool( generators, new AliasTable( probabilities ) );
+    }
+
+    /**
+     * Rolls the options one after the other, in every possible way, the same way as
+     * {@link OptionServices#generate(int, int, int)} does.
+     *
+     * @return false if more than {@value #MAX_EXACT_SIZE} distributions are within the difference.
+     */
+    private static boolean enumerate( int[] percentages, int option, int left, double probability, int minDifference, int maxDifference, List<int[]> distributions, List<Double> weights ) {
+        if( option == percentages.length - 1 ) {
+            percentages[option] = left;
+            int first = 0;
+            int second = 0;
+            for( int percentage : percentages ) {
+                if( percentage > first ) {
+                    second = first;
+                    first = percentage;
+                }
+                else if( percentage > second ) {
+                    second = percentage;
+                }
+            }
+            if( first - second >= minDifference && first - second <= maxDifference ) {
+                if( distributions.size() == MAX_EXACT_SIZE ) {
+                    return false;
+                }
+                distributions.add( percentages.clone() );
+                weights.add( probability );
+            }
+            return true;
+        }
+
+        for( int percentage = 0; percentage <= left; percentage++ ) {
+            percentages[option] = percentage;
+            if( !enumerate( percentages, option + 1, left - percentage, probability / (left + 1), minDifference, maxDifference, distributions, weights ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks a generator from the pool. The generators are shared, so they must only be drawn from.
+     *
+     * @return
+     */
+    public AnswerGenerator draw() {
+        if( probabilities != null ) {
+            LoggedRandom random = LoggedRandom.getInstance();
+            return generators[probabilities.sample( random.roll( probabilities.size() ), random.rollDouble() )];
+        }
+        return generators[LoggedRandom.getInstance().roll( generators.length )];
+    }
+
+    /**
+     * @return true if the pool holds every distribution within the difference, with its probability.
+     */
+    public boolean isExact() {
+        return probabilities != null;
+    }
+
+    /**
+     * @return How many generators the pool holds.
+     */
+    public int size() {
+        return generators.length;
+    }
+}
@@ -22,17 +22,70 @@ package minimumAnswers.main;
 import minimumAnswers.libraries.OccurrenceSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * The random generator of all the simulations. Each thread rolls on its own {@link SplittableRandom}, so the
+ * worker threads never contend for a shared seed. Every stream is derived from a master seed: set the seed
+ * (or the {@value #SEED_PROPERTY} system property) and bind each task to a stream id with
+ * {@link #bindStream(long)}, and a run can be repeated exactly regardless of which thread picks up which task.
+ * <br><br>When logging is switched on, every thread also counts its own rolls in plain long arrays, one per
+ * value {@link #roll(int)} is called with. Logging takes no locks; the counts of all the threads are only
+ * merged when the history is asked for.
+ */
 public class LoggedRandom {
 
     /**
-     * If set to true, will use the singleton from {@link minimumAnswers.Random}. The method that rolls
-     * numbers needs to be syncronized for multithreading, so for performance set this flag to false.
+     * The system property that switches logging on from the start (see {@link #setLogged(boolean)}).
+     */
+    public static final String LOGGED_PROPERTY = "minimumAnswers.loggedRandom";
+    /**
+     * The system property that sets the master seed. If not set, a random master seed is used.
+     */
+    public static final String SEED_PROPERTY = "minimumAnswers.seed";
+    /**
+     * Rolls below a bigger maximum than this are logged in this many equally wide buckets, rather than one
+     * counter per number (the rolls of an {@link minimumAnswers.libraries.AliasTable} go into the millions).
+     */
+    public static final int MAX_HISTOGRAM_SIZE = 1024;
+    /**
+     * The odd constant of SplitMix64, used to spread consecutive stream ids apart.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private volatile long seed;
+    private volatile boolean logged = Boolean.getBoolean( LOGGED_PROPERTY );
+    /**
+     * Threads that roll without binding a stream get the next free stream id.
      */
-    public static final boolean LOGGED_RANDOM = false;
-    private java.util.Random random = new java.util.Random();
-    private HashMap<Integer, OccurrenceSet<Integer>> history = new HashMap<>();
+    private final AtomicLong unboundStreams = new AtomicLong();
+    /**
+     * The rolls of every thread that ever logged a roll, kept after the thread is gone.
+     */
+    private final Queue<RollHistory> histories = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<SplittableRandom> random = new ThreadLocal<SplittableRandom>() {
+        @Override
+        protected SplittableRandom initialValue() {
+            //count down from -1, so these never clash with the (usually positive) ids tasks bind to
+            return newStream( -1 - unboundStreams.getAndIncrement() );
+        }
+    };
+    private final ThreadLocal<RollHistory> history = new ThreadLocal<RollHistory>() {
+        @Override
+        protected RollHistory initialValue() {
+            RollHistory rollHistory = new RollHistory();
+            histories.add( rollHistory );
+            return rollHistory;
+        }
+    };
+
+    private LoggedRandom() {
+        String property = System.getProperty( SEED_PROPERTY );
+        this.seed = (property != null ? Long.parseLong( property ) : new SplittableRandom().nextLong());
+    }
 
     /**
      * This Random is a singleton, the same object is always returned.
@@ -49,58 +102,269 @@ public class LoggedRandom {
     }
 
     /**
-     * Delegates the roll to nextInt from {@link java.util.Random} and logs the result depending on
-     * {@link SingletonRandom.GLOBAL_RANDOM}
+     * @return The master seed all the streams are derived from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the master seed. Only streams created after this call (new threads, or calls to
+     * {@link #bindStream(long)}) are derived from the new seed, so set it before starting any tests.
+     *
+     * @param seed
+     */
+    public void setSeed( long seed ) {
+        this.seed = seed;
+        unboundStreams.set( 0 );
+        random.remove();
+    }
+
+    /**
+     * Makes the calling thread roll on the stream with the given id, from the start of that stream. A task
+     * that binds its own id at the start of its work rolls the same numbers no matter which thread runs it.
+     *
+     * @param streamId
+     */
+    public void bindStream( long streamId ) {
+        random.set( newStream( streamId ) );
+    }
+
+    /**
+     * Derives a stream from the master seed, by mixing the stream id into it (the SplitMix64 finaliser).
+     */
+    private SplittableRandom newStream( long streamId ) {
+        long z = seed + (streamId + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom( z ^ (z >>> 31) );
+    }
+
+    /**
+     * @return true if the rolls are being logged.
+     */
+    public boolean isLogged() {
+        return logged;
+    }
+
+    /**
+     * Switches logging on or off. This can be done at any point, even while tests are running. Logging costs a
+     * few percent of the time of a roll, so it can be left on for big tests too.
+     *
+     * @param logged
+     */
+    public void setLogged( boolean logged ) {
+        this.logged = logged;
+    }
+
+    /**
+     * Delegates the roll to nextInt from the random stream of the calling thread and logs the result depending
+     * on {@link #isLogged()}
      *
      * @param n
      * @return
      */
     public int roll( int n ) {
-        return LoggedRandom.LOGGED_RANDOM
-                ? LoggedRandom.getInstance().rollLogged( n )
-                : LoggedRandom.getInstance().rollUnlogged( n );
+        return logged
+                ? rollLogged( n )
+                : rollUnlogged( n );
     }
 
     /**
-     * Delegates the roll to nextInt from {@link java.util.Random} and does not log the roll
+     * Rolls a block of numbers at once, as that many calls of {@link #roll(int)} would (and logs them the same
+     * way), but looking up the stream of the calling thread only once.
+     *
+     * @param rolls Where to write the rolls
+     * @param length How many numbers to roll, from the start of the array
+     * @param n
+     */
+    public void roll( int[] rolls, int length, int n ) {
+        SplittableRandom stream = random.get();
+        if( logged ) {
+            RollHistory rollHistory = history.get();
+            for( int i = 0; i < length; i++ ) {
+                rolls[i] = stream.nextInt( n );
+                rollHistory.log( n, rolls[i] );
+            }
+        }
+        else {
+            for( int i = 0; i < length; i++ ) {
+                rolls[i] = stream.nextInt( n );
+            }
+        }
+    }
+
+    /**
+     * Rolls a uniform number in [0-1) from the random stream of the calling thread. These rolls are never
+     * logged, as they are not rolls of a die.
+     *
+     * @return
+     */
+    public double rollDouble() {
+        return random.get().nextDouble();
+    }
+
+    /**
+     * Delegates the roll to nextInt from the random stream of the calling thread and does not log the roll
      *
      * @param n
      * @return
      */
     private int rollUnlogged( int n ) {
-        return random.nextInt( n );
+        return random.get().nextInt( n );
     }
 
     /**
-     * Delegates the roll to nextInt from {@link java.util.Random} and logs the roll
+     * Delegates the roll to nextInt from the random stream of the calling thread and logs the roll in the
+     * history of the calling thread.
      *
      * @param n
      * @return
      */
-    private synchronized int rollLogged( int n ) {
-        int nextInt = random.nextInt( n );
-        OccurrenceSet<Integer> rolls = history.get( n );
-        if( rolls == null ) {
-            rolls = new OccurrenceSet<>();
-        }
-        rolls.add( nextInt );
-        history.put( n, rolls );
+    private int rollLogged( int n ) {
+        int nextInt = random.get().nextInt( n );
+        history.get().log( n, nextInt );
 
         return nextInt;
     }
 
     /**
-     * Print all the rolls that took place. There is a header showing the value {@link Random#nextInt(int)}
+     * Print all the rolls that took place. There is a header showing the value {@link #roll(int)}
      * was called with, followed by the distribution of the rolls.
      */
     public void printHistory() {
-        for( Map.Entry<Integer, OccurrenceSet<Integer>> entry : history.entrySet() ) {
-            System.out.println( "\nMax number to roll: " + entry.getKey() + " Total rolls: " + entry.getValue().sizeWithOccurrences() );
-            System.out.println( entry.getValue().getOrdered() );
+        for( Map.Entry<Integer, long[]> entry : getHistograms().entrySet() ) {
+            long total = 0;
+            for( long count : entry.getValue() ) {
+                total += count;
+            }
+            System.out.println( "\nMax number to roll: " + entry.getKey() + " Total rolls: " + total );
+            System.out.println( toOccurrenceSet( entry.getKey(), entry.getValue() ).getOrdered() );
         }
     }
 
+    /**
+     * Merges the rolls of all the threads. For exact counts call this once the tests have finished: the
+     * threads do not publish their counts while they roll, so a history taken during a run may miss the most
+     * recent rolls.
+     *
+     * @return For each value {@link #roll(int)} was called with, the rolls that came out (for big values, the
+     * start of the bucket the rolls fell in).
+     */
     public HashMap<Integer, OccurrenceSet<Integer>> getHistory() {
-        return history;
+        HashMap<Integer, OccurrenceSet<Integer>> merged = new HashMap<>();
+        for( Map.Entry<Integer, long[]> entry : getHistograms().entrySet() ) {
+            merged.put( entry.getKey(), toOccurrenceSet( entry.getKey(), entry.getValue() ) );
+        }
+        return merged;
+    }
+
+    /**
+     * Forgets all the rolls logged so far. Call this while no tests are running.
+     */
+    public void clearHistory() {
+        for( RollHistory rollHistory : histories ) {
+            rollHistory.clear();
+        }
+    }
+
+    /**
+     * @return The counts of all the threads, added up per value {@link #roll(int)} was called with.
+     */
+    private Map<Integer, long[]> getHistograms() {
+        Map<Integer, long[]> merged = new HashMap<>();
+        for( RollHistory rollHistory : histories ) {
+            for( Map.Entry<Integer, long[]> entry : rollHistory.getHistograms().entrySet() ) {
+                long[] counts = merged.get( entry.getKey() );
+                if( counts == null ) {
+                    counts = new long[entry.getValue().length];
+                    merged.put( entry.getKey(), counts );
+                }
+                for( int i = 0; i < counts.length; i++ ) {
+                    counts[i] += entry.getValue()[i];
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static OccurrenceSet<Integer> toOccurrenceSet( int n, long[] counts ) {
+        OccurrenceSet<Integer> rolls = new OccurrenceSet<>();
+        for( int i = 0; i < counts.length; i++ ) {
+            if( counts[i] > 0 ) {
+                rolls.add( bucketStart( n, i ), (int) Math.min( counts[i], Integer.MAX_VALUE ) );
+            }
+        }
+        return rolls;
+    }
+
+    private static int bucketStart( int n, int bucket ) {
+        return (n <= MAX_HISTOGRAM_SIZE ? bucket : (int) ((long) bucket * n / MAX_HISTOGRAM_SIZE));
+    }
+
+    /**
+     * The rolls of a single thread. Only the owner thread writes to it, so it needs no locking.
+     */
+    private static class RollHistory {
+
+        /**
+         * Maximums below this (as used by the option generation and the roller array) find their histogram
+         * directly by index.
+         */
+        private static final int SMALL_MAXIMUMS = 128;
+        private volatile long[][] small = new long[SMALL_MAXIMUMS][];
+        private volatile Map<Integer, long[]> large = new HashMap<>();
+        private int lastLarge = -1;
+        private long[] lastLargeCounts;
+
+        private void log( int n, int roll ) {
+            long[] counts;
+            if( n < small.length ) {
+                counts = small[n];
+                if( counts == null ) {
+                    counts = newHistogram( n );
+                }
+            }
+            else if( n == lastLarge ) {
+                counts = lastLargeCounts;
+            }
+            else {
+                counts = large.get( n );
+                if( counts == null ) {
+                    counts = newHistogram( n );
+                }
+                lastLarge = n;
+                lastLargeCounts = counts;
+            }
+            counts[(n <= MAX_HISTOGRAM_SIZE ? roll : (int) ((long) roll * MAX_HISTOGRAM_SIZE / n))]++;
+        }
+
+        private synchronized long[] newHistogram( int n ) {
+            long[] counts = new long[Math.min( n, MAX_HISTOGRAM_SIZE )];
+            if( n < small.length ) {
+                small[n] = counts;
+            }
+            else {
+                large.put( n, counts );
+            }
+            return counts;
+        }
+
+        private synchronized Map<Integer, long[]> getHistograms() {
+            Map<Integer, long[]> histograms = new HashMap<>( large );
+            for( int n = 0; n < small.length; n++ ) {
+                if( small[n] != null ) {
+                    histograms.put( n, small[n] );
+                }
+            }
+            return histograms;
+        }
+
+        private synchronized void clear() {
+            small = new long[small.length][];
+            large = new HashMap<>();
+            lastLarge = -1;
+            lastLargeCounts = null;
+        }
     }
 }
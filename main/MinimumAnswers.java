@@ -25,13 +25,18 @@ package minimumAnswers.main;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import tests.AnsweringFairnessTest;
+import tests.FixedNumberExactTest;
+import tests.FixedNumberSweepTest;
 import tests.FixedNumberTest;
+import tests.FluctuatingNumberExactTest;
+import tests.FluctuatingNumberSweepTest;
 import tests.FluctuatingNumberTest;
+import tests.MinimumAnswersSolver;
+import tests.Precision;
+import tests.ResultSink;
+import tests.ResultStore;
+import tests.SparseNumberTest;
 
 /**
  *
@@ -45,9 +50,10 @@ public class MinimumAnswers {
     public static void main( String[] args ) {
         //create the framework for multithreading
         //Any tests we wish to run should be added to the runnables
-        ExecutorService executor = Executors.newFixedThreadPool( 16 ); //number of threads
-        List<Future> futures = new ArrayList<>();
+        SweepScheduler scheduler = new SweepScheduler(); //a thread per core
         List<Runnable> runnables = new ArrayList<>();
+        //open the results store (if one is used) before anything rolls, as it may set the seed
+        ResultStore.getInstance();
 
         /**
          * ***** CREATE TESTS (ADD NEW TESTS HERE) ******
@@ -75,6 +81,49 @@ public class MinimumAnswers {
             }
         }      
 
+        //Perform fixed number tests until their results are precise enough, rather than for a fixed number of iterations
+        if( false ) {
+            int maxIterations = 10000000;
+            double winEpsilon = 0.1; //percentage points
+            int minO = 3;
+            int maxO = 3;
+            int minN = 1;
+            int maxN = 33;
+            for( int O = minO; O <= maxO; O++ ) {
+                for( int N = minN; N <= maxN; N++ ) {
+                    FixedNumberTest test = new FixedNumberTest( maxIterations, N, O, new Precision( winEpsilon ) );
+                    runnables.add( test );
+                }
+            }
+        }
+
+        //Perform the fixed number tests of every N from minN to maxN at once, on the same votes
+        if( false ) {
+            int iterations = 100000;
+            int minO = 3;
+            int maxO = 3;
+            int minN = 1;
+            int maxN = 33;
+            for( int O = minO; O <= maxO; O++ ) {
+                FixedNumberSweepTest test = new FixedNumberSweepTest( iterations, minN, maxN, O );
+                runnables.add( test );
+            }
+        }
+
+        //Work out the fixed number results exactly, rather than simulating them
+        if( false ) {
+            int minO = 3;
+            int maxO = 3;
+            int minN = 1;
+            int maxN = 33;
+            for( int O = minO; O <= maxO; O++ ) {
+                for( int N = minN; N <= maxN; N++ ) {
+                    FixedNumberExactTest test = new FixedNumberExactTest( N, O );
+                    runnables.add( test );
+                }
+            }
+        }
+
         //Perform fluctuating number tests by adding them to the runnables
         if( true ) {
             int iterations = 1000000;
@@ -90,27 +139,89 @@ public class MinimumAnswers {
             }
         }
 
+        //Perform the fluctuating number tests of every C from minC to maxC at once, on the same votes
+        if( false ) {
+            int iterations = 1000000;
+            int minO = 6;
+            int maxO = 6;
+            int minC = 1;
+            int maxC = 24;
+            for( int O = minO; O <= maxO; O++ ) {
+                FluctuatingNumberSweepTest test = new FluctuatingNumberSweepTest( iterations, minC, maxC, O );
+                runnables.add( test );
+            }
+        }
+
+        //Work out the fluctuating number results exactly, every C up to maxC at once
+        if( false ) {
+            int maxVotes = 500;
+            int minO = 3;
+            int maxO = 3;
+            int maxC = 8;
+            for( int O = minO; O <= maxO; O++ ) {
+                FluctuatingNumberExactTest test = new FluctuatingNumberExactTest( maxC, O, maxVotes );
+                runnables.add( test );
+            }
+        }
+
+        //Search the minimum N (fixed) or C (fluctuating) that meets a target accuracy, instead of sweeping
+        if( false ) {
+            double target = 95; //percentage of wins
+            double confidence = 0.95;
+            int minO = 3;
+            int maxO = 6;
+            for( int O = minO; O <= maxO; O++ ) {
+                runnables.add( new MinimumAnswersSolver( true, O, 1, 100, target, confidence ) );
+                runnables.add( new MinimumAnswersSolver( false, O, 1, 100, target, confidence ) );
+            }
+        }
+
+        //Run the fluctuating number test on large answer spaces, with skewed (Zipf) popularity
+        if( false ) {
+            int iterations = 100000;
+            int O = 10000;
+            double exponent = 1;
+            int minC = 1;
+            int maxC = 8;
+            for( int C = minC; C <= maxC; C++ ) {
+                runnables.add( new SparseNumberTest( iterations, false, C, O, SparseAnswerGenerator.Prior.ZIPF, exponent ) );
+            }
+        }
+
         /**
          * ***** RUN THE TESTS (NOTHING TO EDIT) ******
          */
-        //start execution of each runnable in a thread
-        for( Runnable r : runnables ) {
-            futures.add( executor.submit( r ) );
-        }
+        //start the most expensive runnables first, and wait until all tasks complete.
+        //The progress is printed every minute (and is also over JMX, see SweepMetrics)
+        SweepMetrics.getInstance().startReporter( 60 );
+        boolean interrupted = false;
         try {
-            //wait until all tasks complete
-            executor.shutdown(); //do not accept more tasks
-            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.SECONDS );
+            scheduler.run( runnables );
         } catch( InterruptedException e ) {
+            //whatever finished is in the results store, if one is used (see ResultStore)
+            System.out.println( "Interrupted before all the tests completed" );
+            interrupted = true;
+        } finally {
+            //wait until all the results published so far are written, even if interrupted
+            try {
+                ResultSink.getInstance().close();
+            } catch( InterruptedException e ) {
+                interrupted = true;
+            }
+            ResultStore.closeInstance();
+        }
+        if( interrupted ) {
+            Thread.currentThread().interrupt();
         }
+        SweepMetrics.getInstance().stopReporter();
+        System.err.println( SweepMetrics.getInstance().report() );
 
         /**
          * ***** CHECK THE ROLLER ******
          */
         //If you want to check the rolls, print everything that ever rolled.
-        //This is only usefull if the flag in {@link LoggedRandom} is set to true.
-        //This has a huge impact on performance, so it is generally not advices to keep set to true
-        //for big tests.
+        //This is only usefull if logging is switched on in {@link LoggedRandom} (setLogged, or the
+        //minimumAnswers.loggedRandom system property).
         LoggedRandom.getInstance().printHistory();
     }
 }
@@ -19,11 +19,15 @@
  */
 package minimumAnswers.main;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import minimumAnswers.libraries.Pair;
 
 /**
  * A class to provide static methods with various ways to create the option tables
@@ -32,6 +36,12 @@ import java.util.Random;
  */
 public class OptionServices {
 
+    /**
+     * {@link #listDistributions(int, int, int)} gives up when there are more distinct (partial) distributions
+     * than this.
+     */
+    private static final int MAX_LISTED_DISTRIBUTIONS = 1000000;
+
     /**
      * Create a distribution with the given number of options, where the difference between the first and
      * second most common options is always at least minDifference, and not more than maxDifference. <br>For
@@ -40,7 +50,8 @@ public class OptionServices {
      * which option get what). The options are named opt1, opt2 etc.<br><br><br>To generate the options we
      * roll a number between 0 and 100 for the first option. We then roll a number between 0 and whatever is
      * left from the previous roll (so the sum cannot exceed 100). The last option gets the remaining
-     * percentage (if any)
+     * percentage (if any). If few of these distributions fall within the required difference, the
+     * {@link DistributionSampler} samples one that does directly, with the same probabilities.
      *
      *
      * @param numOfOptions How many possible options should the generator have. Must be between [2-100]
@@ -50,30 +61,58 @@ public class OptionServices {
      * option. Must be between [0-100]
      */
     public static Map<String, Integer> generate( int numOfOptions, int minDifference, int maxDifference ) throws IllegalArgumentException {
-        //sanity checks
-        if( numOfOptions < 2 || numOfOptions > 100 ) {
-            throw new IllegalArgumentException( "The possible number of options must be between [2-100] (" + minDifference + " given)" );
-        }
-        if( minDifference < 0 || minDifference > 100 ) {
-            throw new IllegalArgumentException( "The minimum difference must be between [0-100] (" + minDifference + " given)" );
-        }
-        if( maxDifference < 0 || maxDifference > 100 ) {
-            throw new IllegalArgumentException( "The maximum difference must be between [0-100] (" + minDifference + " given)" );
-        }
-        if( minDifference > maxDifference ) {
-            throw new IllegalArgumentException( "The minimum difference cannot be more than the maximum difference" );
-        }
-        if( minDifference == maxDifference && minDifference == 99 ) {
-            throw new IllegalArgumentException( "You can never get a difference of 99. 100-0=100, 99-1=98" );
+        //(a negative number of options is left for generateInto to reject)
+        int[] percentages = new int[Math.max( 0, numOfOptions )];
+        generateInto( percentages, minDifference, maxDifference );
+        Map<String, Integer> options = new HashMap<>(); //the resulting options
+        for( int i = 0; i < numOfOptions; i++ ) {
+            options.put( "opt" + i, percentages[i] );
         }
+        return options;
+    }
 
+    /**
+     * Generates options exactly as {@link #generate(int, int, int)} does (with the same rolls), but writes only
+     * their percentages, in the order of the options, into the given array. Nothing is allocated, so the
+     * simulation loops can use this with a reusable array and {@link AnswerGenerator#reset(int[])}.
+     *
+     * @param percentages Where to write the percentages. Its length is the number of options.
+     * @param minDifference
+     * @param maxDifference
+     */
+    public static void generateInto( int[] percentages, int minDifference, int maxDifference ) throws IllegalArgumentException {
+        checkBand( percentages.length, minDifference, maxDifference );
+        generateInto( percentages, DistributionSampler.getInstance( percentages.length, minDifference, maxDifference ) );
+    }
+
+    /**
+     * Generates options as {@link #generateInto(int[], int, int)} does, in the band of the given sampler. Tests
+     * that go through many bands keep a sampler for each, rather than looking them up every time.
+     *
+     * @param percentages Where to write the percentages. Its length is the number of options of the sampler.
+     * @param band The sampler of the band, from {@link DistributionSampler#getInstance(int, int, int)}
+     */
+    public static void generateInto( int[] percentages, DistributionSampler band ) throws IllegalArgumentException {
+        int numOfOptions = percentages.length;
+        int minDifference = band.getMinDifference();
+        int maxDifference = band.getMaxDifference();
+        if( numOfOptions != band.getNumOfOptions() ) {
+            throw new IllegalArgumentException( "The sampler is for " + band.getNumOfOptions() + " options (" + numOfOptions + " given)" );
+        }
+        checkBand( numOfOptions, minDifference, maxDifference );
 
-        Map<String, Integer> options; //the resulting options
+        //narrow differences are rarely hit by chance, so construct one directly
+        if( band.isWorthSampling() ) {
+            band.sampleInto( percentages );
+            SweepMetrics.getInstance().addGenerated( 1 );
+            return;
+        }
 
         //create options sets until you bump in one that is within the required boundaries
         int difference;
+        int attempts = 0;
         do {
-            options = new HashMap<>();
+            attempts++;
             int totalPercentage = 0;
             //assign percentages to all intermediate options
             for( int i = 0; i < numOfOptions - 1; i++ ) {
@@ -85,17 +124,123 @@ public class OptionServices {
                         ? LoggedRandom.getInstance().roll( maxPercentage )
                         : 0);
                 totalPercentage += percentage;
-                options.put( "opt" + i, percentage );
+                percentages[i] = percentage;
             }
             //Assign the remaining percentage to the last option    
-            int percentage = 100 - totalPercentage;
-            options.put( "opt" + (numOfOptions - 1), percentage );
+            percentages[numOfOptions - 1] = 100 - totalPercentage;
 
             //see if the generated options are withing the required boundaries
-            difference = getDifference( options );
+            difference = getDifference( percentages );
         } while( difference < minDifference || difference > maxDifference );
+        SweepMetrics.getInstance().addGenerated( attempts );
+    }
 
-        return options;
+    private static void checkBand( int numOfOptions, int minDifference, int maxDifference ) throws IllegalArgumentException {
+        //sanity checks
+        if( numOfOptions < 2 || numOfOptions > 100 ) {
+            throw new IllegalArgumentException( "The possible number of options must be between [2-100] (" + numOfOptions + " given). Use a SparseAnswerGenerator for more options" );
+        }
+        if( minDifference < 0 || minDifference > 100 ) {
+            throw new IllegalArgumentException( "The minimum difference must be between [0-100] (" + minDifference + " given)" );
+        }
+        if( maxDifference < 0 || maxDifference > 100 ) {
+            throw new IllegalArgumentException( "The maximum difference must be between [0-100] (" + minDifference + " given)" );
+        }
+        if( minDifference > maxDifference ) {
+            throw new IllegalArgumentException( "The minimum difference cannot be more than the maximum difference" );
+        }
+        if( minDifference == maxDifference && minDifference == 99 ) {
+            throw new IllegalArgumentException( "You can never get a difference of 99. 100-0=100, 99-1=98" );
+        }
+    }
+
+    /**
+     * Rolls the options the way {@link #generate(int, int, int)} does, but keeps every outcome along with its
+     * probability. Outcomes with the same percentages in a different order are merged, which keeps the number
+     * of outcomes down. This lists the prior that the tests draw their distributions from.
+     *
+     * @param numOfOptions
+     * @param minDifference
+     * @param maxDifference
+     * @return Each distinct distribution within the difference (sorted, largest percentage first) with the
+     * probability of generating it, or null if there are too many of them to list.
+     */
+    public static List<Pair<int[], Double>> listDistributions( int numOfOptions, int minDifference, int maxDifference ) {
+        //7 bits per percentage, in a long
+        if( numOfOptions > 9 ) {
+            return null;
+        }
+        Map<Long, Double> states = new HashMap<>();
+        states.put( packDistribution( new int[0] ), 1.0 );
+        for( int option = 0; option < numOfOptions; option++ ) {
+            Map<Long, Double> next = new HashMap<>();
+            for( Map.Entry<Long, Double> state : states.entrySet() ) {
+                int[] percentages = unpackDistribution( state.getKey(), option );
+                int left = 100;
+                for( int percentage : percentages ) {
+                    left -= percentage;
+                }
+                int[] extended = Arrays.copyOf( percentages, option + 1 );
+                //the last option gets what is left, the others roll between [0-left]
+                int from = (option == numOfOptions - 1 ? left : 0);
+                double probability = (option == numOfOptions - 1 ? state.getValue() : state.getValue() / (left + 1));
+                for( int percentage = from; percentage <= left; percentage++ ) {
+                    extended[option] = percentage;
+                    int[] sorted = sortDescending( extended );
+                    if( option == numOfOptions - 1 ) {
+                        int difference = sorted[0] - sorted[1];
+                        if( difference < minDifference || difference > maxDifference ) {
+                            continue;
+                        }
+                    }
+                    Long key = packDistribution( sorted );
+                    Double sum = next.get( key );
+                    next.put( key, (sum == null ? probability : sum + probability) );
+                }
+            }
+            if( next.size() > MAX_LISTED_DISTRIBUTIONS ) {
+                return null;
+            }
+            states = next;
+        }
+
+        List<Pair<int[], Double>> distributions = new ArrayList<>();
+        for( Map.Entry<Long, Double> state : states.entrySet() ) {
+            distributions.add( new Pair<>( unpackDistribution( state.getKey(), numOfOptions ), state.getValue() ) );
+        }
+        return distributions;
+    }
+
+    private static long packDistribution( int[] sorted ) {
+        long key = 0;
+        for( int percentage : sorted ) {
+            key = (key << 7) | percentage;
+        }
+        return key;
+    }
+
+    private static int[] unpackDistribution( long key, int size ) {
+        int[] sorted = new int[size];
+        for( int i = size - 1; i >= 0; i-- ) {
+            sorted[i] = (int) (key & 127);
+            key >>>= 7;
+        }
+        return sorted;
+    }
+
+    /**
+     * @param values
+     * @return A sorted copy of the values, largest first.
+     */
+    public static int[] sortDescending( int[] values ) {
+        int[] sorted = values.clone();
+        Arrays.sort( sorted );
+        for( int i = 0; i < sorted.length / 2; i++ ) {
+            int swap = sorted[i];
+            sorted[i] = sorted[sorted.length - 1 - i];
+            sorted[sorted.length - 1 - i] = swap;
+        }
+        return sorted;
     }
 
     /**
@@ -121,6 +266,27 @@ public class OptionServices {
         return max - secondMax;
     }
 
+    /**
+     * Calculates the difference between the 2 highest values.
+     *
+     * @param values
+     * @return 0 if the highest value appears more than once
+     */
+    public static int getDifference( int[] values ) {
+        int max = Integer.MIN_VALUE;
+        int secondMax = Integer.MIN_VALUE;
+        for( int value : values ) {
+            if( value > max ) {
+                secondMax = max;
+                max = value;
+            }
+            else if( value > secondMax ) {
+                secondMax = value;
+            }
+        }
+        return (values.length > 1 ? max - secondMax : max);
+    }
+
     /**
      * Returns a string with all the keys, who's values are the max value. The resulting List has a size of 1
      * if the maximum value is unique.
@@ -0,0 +1,294 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import minimumAnswers.libraries.Pair;
+
+/**
+ * Works out exactly how often plurality voting over N answers finds the top option of a distribution,
+ * instead of estimating it by simulation.<br><br>An option is the unique plurality winner with x votes when
+ * every other option gets fewer than x of the remaining N-x votes. The chance of that is found by giving the
+ * remaining votes to the other options one after the other (each gets a binomial share of what is left),
+ * keeping only the ways where every option stays below x. Adding these up over x gives the probability that
+ * the option wins outright. The top option winning outright is a win, no option winning outright is a draw,
+ * and anything else is a loss.<br><br>The results only depend on the percentages of a distribution (not on
+ * which option is which), so they are remembered per sorted distribution and N. Over the distributions of
+ * {@link OptionServices#generate(int, int, int)}, the evaluator adds up the results of every distinct
+ * distribution, weighted by the probability of rolling it. When there are too many distinct distributions
+ * for that, it averages the exact results of {@value #PRIOR_SAMPLES} generated distributions instead, which
+ * still has far less noise than simulating the votes.
+ *
+ * @author Andreas Lianos
+ */
+public class PluralityEvaluator {
+
+    /**
+     * How many generated distributions are averaged when the prior has too many distributions to list.
+     */
+    public static final int PRIOR_SAMPLES = 10000;
+    /**
+     * Marks the priors with too many distributions to list.
+     */
+    private static final List<Pair<int[], Double>> UNLISTED = new ArrayList<>();
+    /**
+     * Win, draw and loss probabilities per sorted distribution and N.
+     */
+    private final Map<String, double[]> results = new ConcurrentHashMap<>();
+    /**
+     * The probability of every distinct sorted distribution, per number of options and difference. Null
+     * values mean there are too many to list.
+     */
+    private final Map<String, List<Pair<int[], Double>>> priors = new ConcurrentHashMap<>();
+    private volatile double[] logFactorials = new double[]{ 0 };
+
+    /**
+     * Evaluates plurality voting on the given distribution.
+     *
+     * @param options A map of options and their percentages, as given by
+     * {@link OptionServices#generate(int, int, int)}
+     * @param N The number of answers
+     * @return The probability of {win, draw, loss}, where a win is finding the option with the highest
+     * percentage.
+     */
+    public double[] evaluate( Map<String, Integer> options, int N ) {
+        int[] percentages = new int[options.size()];
+        int i = 0;
+        for( Integer percentage : options.values() ) {
+            percentages[i++] = percentage;
+        }
+        return evaluate( percentages, N );
+    }
+
+    /**
+     * Evaluates plurality voting on the given distribution.
+     *
+     * @param percentages The percentages of the options, in any order.
+     * @param N The number of answers
+     * @return The probability of {win, draw, loss}, where a win is finding the option with the highest
+     * percentage.
+     */
+    public double[] evaluate( int[] percentages, int N ) {
+        int[] sorted = OptionServices.sortDescending( percentages );
+        String key = Arrays.toString( sorted ) + ":" + N;
+        double[] result = results.get( key );
+        if( result == null ) {
+            result = compute( sorted, N );
+            results.put( key, result );
+        }
+        return result.clone();
+    }
+
+    /**
+     * Evaluates plurality voting over all the distributions {@link OptionServices#generate(int, int, int)}
+     * creates with the given arguments, each weighted by how likely it is to be generated.
+     *
+     * @param numOfOptions
+     * @param minDifference
+     * @param maxDifference
+     * @param N The number of answers
+     * @return The probability of {win, draw, loss}
+     */
+    public double[] evaluatePrior( int numOfOptions, int minDifference, int maxDifference, int N ) {
+        String priorKey = numOfOptions + ":" + minDifference + ":" + maxDifference;
+        List<Pair<int[], Double>> prior = priors.get( priorKey );
+        if( prior == null ) {
+            prior = OptionServices.listDistributions( numOfOptions, minDifference, maxDifference );
+            if( prior == null ) {
+                prior = UNLISTED;
+            }
+            else if( prior.isEmpty() ) {
+                throw new IllegalArgumentException( "No distribution of " + numOfOptions + " options can have a difference between " + minDifference + " and " + maxDifference );
+            }
+            priors.put( priorKey, prior );
+        }
+
+        double[] total = new double[3];
+        if( prior != UNLISTED ) {
+            double mass = 0;
+            for( Pair<int[], Double> distribution : prior ) {
+                double[] result = evaluate( distribution.getValueA(), N );
+                for( int i = 0; i < 3; i++ ) {
+                    total[i] += distribution.getValueB() * result[i];
+                }
+                mass += distribution.getValueB();
+            }
+            for( int i = 0; i < 3; i++ ) {
+                total[i] /= mass;
+            }
+        }
+        else {
+            DistributionSampler sampler = DistributionSampler.getInstance( numOfOptions, minDifference, maxDifference );
+            for( int sample = 0; sample < PRIOR_SAMPLES; sample++ ) {
+                double[] result = evaluate( sampler.sample(), N );
+                for( int i = 0; i < 3; i++ ) {
+                    total[i] += result[i] / PRIOR_SAMPLES;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param sorted The percentages, largest first.
+     */
+    private double[] compute( int[] sorted, int N ) {
+        //options that can never get a vote make no difference
+        int nonZero = 0;
+        while( nonZero < sorted.length && sorted[nonZero] > 0 ) {
+            nonZero++;
+        }
+        double[] probabilities = new double[nonZero];
+        for( int i = 0; i < nonZero; i++ ) {
+            probabilities[i] = sorted[i] / 100.0;
+        }
+        ensureLogFactorials( N );
+
+        //the probability that each option wins outright. Options with the same percentage share it.
+        double winsOutright = 0;
+        double topWinsOutright = 0;
+        for( int i = 0; i < nonZero; i++ ) {
+            int same = i;
+            while( same + 1 < nonZero && sorted[same + 1] == sorted[i] ) {
+                same++;
+            }
+            double unique = winsOutright( probabilities, i, N );
+            if( i == 0 ) {
+                topWinsOutright = unique;
+            }
+            winsOutright += unique * (same - i + 1);
+            i = same;
+        }
+        if( sorted[0] == (sorted.length > 1 ? sorted[1] : -1) ) {
+            //no single top option, so finding it is not possible
+            topWinsOutright = 0;
+        }
+
+        double win = topWinsOutright;
+        double draw = Math.max( 0, 1 - winsOutright );
+        double loss = Math.max( 0, 1 - win - draw );
+        return new double[]{ win, draw, loss };
+    }
+
+    /**
+     * @return The probability that the given option gets more votes than every other option.
+     */
+    private double winsOutright( double[] probabilities, int option, int N ) {
+        double p = probabilities[option];
+        double[] others = new double[probabilities.length - 1];
+        for( int i = 0, j = 0; i < probabilities.length; i++ ) {
+            if( i != option ) {
+                others[j++] = probabilities[i];
+            }
+        }
+        if( others.length == 0 ) {
+            return (N > 0 ? 1 : 0);
+        }
+
+        double total = 0;
+        for( int votes = 1; votes <= N; votes++ ) {
+            double chance = binomial( N, votes, p );
+            if( chance > 0 ) {
+                total += chance * allBelow( others, 1 - p, N - votes, votes );
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param others The probabilities of the options
+     * @param mass What the probabilities add up to
+     * @param n How many votes go to the options
+     * @param limit The number of votes every option must stay below
+     * @return The probability that every option gets fewer votes than the limit.
+     */
+    private double allBelow( double[] others, double mass, int n, int limit ) {
+        if( n > (long) others.length * (limit - 1) ) {
+            return 0;
+        }
+        //chances[m]: m votes are still to be given out, and every option so far got fewer than the limit
+        double[] chances = new double[n + 1];
+        chances[n] = 1;
+        double massLeft = mass;
+        for( int i = 0; i < others.length - 1; i++ ) {
+            double share = Math.min( 1, others[i] / massLeft );
+            double logShare = Math.log( share );
+            double logRest = Math.log1p( -share );
+            double[] next = new double[n + 1];
+            for( int m = 0; m <= n; m++ ) {
+                if( chances[m] == 0 ) {
+                    continue;
+                }
+                if( share >= 1 ) {
+                    //all the votes left go to this option
+                    if( m < limit ) {
+                        next[0] += chances[m];
+                    }
+                    continue;
+                }
+                for( int votes = 0; votes < limit && votes <= m; votes++ ) {
+                    next[m - votes] += chances[m] * binomial( m, votes, logShare, logRest );
+                }
+            }
+            chances = next;
+            massLeft -= others[i];
+        }
+        //the last option gets whatever is left
+        double total = 0;
+        for( int m = 0; m < limit && m <= n; m++ ) {
+            total += chances[m];
+        }
+        return total;
+    }
+
+    private double binomial( int n, int k, double p ) {
+        if( p <= 0 ) {
+            return (k == 0 ? 1 : 0);
+        }
+        if( p >= 1 ) {
+            return (k == n ? 1 : 0);
+        }
+        return binomial( n, k, Math.log( p ), Math.log1p( -p ) );
+    }
+
+    /**
+     * @param logP ln(p), with p in (0-1)
+     * @param logQ ln(1-p)
+     */
+    private double binomial( int n, int k, double logP, double logQ ) {
+        double[] lf = logFactorials;
+        return Math.exp( lf[n] - lf[k] - lf[n - k] + k * logP + (n - k) * logQ );
+    }
+
+    private synchronized void ensureLogFactorials( int n ) {
+        if( logFactorials.length > n ) {
+            return;
+        }
+        double[] lf = Arrays.copyOf( logFactorials, n + 1 );
+        for( int i = logFactorials.length; i <= n; i++ ) {
+            lf[i] = lf[i - 1] + Math.log( i );
+        }
+        logFactorials = lf;
+    }
+}
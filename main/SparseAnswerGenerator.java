@@ -0,0 +1,228 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.Arrays;
+import minimumAnswers.libraries.SparseVoteCounter;
+
+/**
+ * Draws answers from a large number of options (thousands or more), with skewed popularity, as in open-ended
+ * labelling tasks. Unlike {@link AnswerGenerator}, which keeps every option in a 100 slot roller array, this
+ * generator never holds the whole distribution: options are identified by index, and only the options that
+ * are actually drawn cost any memory or time. Use it with a {@link SparseVoteCounter}.<br><br>Two priors are
+ * supported:
+ * <ul>
+ * <li>{@link Prior#ZIPF}: option k (counting from 0) is drawn with probability proportional to
+ * 1/(k+1)^parameter. The distribution is the same in every iteration, and option 0 is the correct answer.</li>
+ * <li>{@link Prior#DIRICHLET}: every {@link #regenerate()} rolls a new distribution from a symmetric Dirichlet
+ * with the given concentration per option. The options are built lazily by stick-breaking, in size-biased
+ * order (the stick of the i-th option is a Beta(1+parameter, (O-i-1)*parameter) share of what is left), so
+ * the popular options come first and only as many sticks are broken as the draws reach into. The work
+ * depends on O*parameter, the concentration of the whole distribution, rather than on O alone.</li>
+ * </ul>
+ *
+ * @author Andreas Lianos
+ */
+public class SparseAnswerGenerator {
+
+    /**
+     * The prior the distribution of the options comes from.
+     */
+    public enum Prior {
+        ZIPF, DIRICHLET
+    }
+    private static final int INITIAL_STICKS = 64;
+    private final Prior prior;
+    private final int numOfOptions;
+    private final double parameter;
+    private final ZipfSampler zipf;
+    /**
+     * The probability of each option broken off so far, in the order they were broken off (Dirichlet only).
+     */
+    private double[] sticks;
+    /**
+     * The probability of the options up to and including each stick.
+     */
+    private double[] cumulative;
+    private int brokenSticks;
+    private double left;
+    private double difference;
+    private int topOptionIndex;
+    private int secondOptionIndex;
+
+    /**
+     * @param prior The prior of the distribution
+     * @param numOfOptions How many options there are, at least 2
+     * @param parameter The exponent of a Zipf prior, or the concentration per option of a Dirichlet prior.
+     * Above 0.
+     */
+    public SparseAnswerGenerator( Prior prior, int numOfOptions, double parameter ) {
+        if( numOfOptions < 2 ) {
+            throw new IllegalArgumentException( "The possible number of options must be at least 2 (" + numOfOptions + " given)" );
+        }
+        if( !(parameter > 0) ) {
+            throw new IllegalArgumentException( "The parameter of the prior must be above 0 (" + parameter + " given)" );
+        }
+        this.prior = prior;
+        this.numOfOptions = numOfOptions;
+        this.parameter = parameter;
+        if( prior == Prior.ZIPF ) {
+            this.zipf = new ZipfSampler( numOfOptions, parameter );
+            this.topOptionIndex = 0;
+            this.secondOptionIndex = 1;
+            this.difference = zipf.getProbability( 0 ) - zipf.getProbability( 1 );
+        }
+        else {
+            this.zipf = null;
+            this.sticks = new double[Math.min( INITIAL_STICKS, numOfOptions )];
+            this.cumulative = new double[sticks.length];
+            regenerate();
+        }
+    }
+
+    /**
+     * Rolls a new distribution from the prior. Nothing is allocated, unless more options are broken off than
+     * ever before. A Zipf distribution never changes, so it is left as it is.
+     *
+     * @return this generator
+     */
+    public SparseAnswerGenerator regenerate() {
+        if( prior == Prior.ZIPF ) {
+            return this;
+        }
+        brokenSticks = 0;
+        left = 1;
+        topOptionIndex = -1;
+        secondOptionIndex = -1;
+        //break off sticks until what is left could not make an option bigger than the second one
+        while( brokenSticks < numOfOptions && left > probability( secondOptionIndex ) ) {
+            breakStick();
+        }
+        difference = probability( topOptionIndex ) - probability( secondOptionIndex );
+        return this;
+    }
+
+    /**
+     * Breaks off the stick of the next option, from what is left.
+     */
+    private void breakStick() {
+        if( brokenSticks == sticks.length ) {
+            sticks = Arrays.copyOf( sticks, Math.min( 2 * sticks.length, numOfOptions ) );
+            cumulative = Arrays.copyOf( cumulative, sticks.length );
+        }
+        int optionsAfter = numOfOptions - brokenSticks - 1;
+        double stick = (optionsAfter == 0 ? left : left * BetaSampler.sample( 1 + parameter, optionsAfter * parameter ));
+        int option = brokenSticks++;
+        sticks[option] = stick;
+        left -= stick;
+        cumulative[option] = (optionsAfter == 0 ? 1 : 1 - left);
+
+        if( stick > probability( topOptionIndex ) ) {
+            secondOptionIndex = topOptionIndex;
+            topOptionIndex = option;
+        }
+        else if( stick > probability( secondOptionIndex ) ) {
+            secondOptionIndex = option;
+        }
+    }
+
+    private double probability( int option ) {
+        return (option < 0 ? 0 : sticks[option]);
+    }
+
+    /**
+     * Draws an answer.
+     *
+     * @return The index of the drawn option, between [0-(numOfOptions-1)].
+     */
+    public int drawIndex() {
+        if( zipf != null ) {
+            return zipf.sample();
+        }
+        double u = LoggedRandom.getInstance().rollDouble();
+        //break off more options only if the roll falls beyond the ones there are
+        while( u >= cumulative[brokenSticks - 1] && brokenSticks < numOfOptions ) {
+            breakStick();
+        }
+        int low = 0;
+        int high = brokenSticks - 1;
+        while( low < high ) {
+            int middle = (low + high) >>> 1;
+            if( u < cumulative[middle] ) {
+                high = middle;
+            }
+            else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Draws an answer and adds it straight to the given votes.
+     *
+     * @param votes
+     * @return The index of the drawn option.
+     */
+    public int drawInto( SparseVoteCounter votes ) {
+        int option = drawIndex();
+        votes.add( option );
+        return option;
+    }
+
+    /**
+     * @return The index of the most likely option, the correct answer.
+     */
+    public int getTopOptionIndex() {
+        return topOptionIndex;
+    }
+
+    /**
+     * @return The difference between the probabilities of the two most likely options, between [0-1].
+     */
+    public double getDifference() {
+        return difference;
+    }
+
+    /**
+     * @return How many options the generator has worked out so far. For a Zipf prior this is all of them, as
+     * they need no memory.
+     */
+    public int getOptionsInUse() {
+        return (zipf != null ? numOfOptions : brokenSticks);
+    }
+
+    public int getNumOfOptions() {
+        return numOfOptions;
+    }
+
+    public Prior getPrior() {
+        return prior;
+    }
+
+    public double getParameter() {
+        return parameter;
+    }
+
+    @Override
+    public String toString() {
+        return prior + "(" + parameter + ") O=" + numOfOptions;
+    }
+}
@@ -0,0 +1,311 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import minimumAnswers.libraries.Pair;
+
+/**
+ * Works out exactly how the "draw answers until the top two options are C votes apart" rule performs on a
+ * distribution, instead of estimating it by simulation.<br><br>Drawing answers is a Markov chain over how
+ * far each option is behind the leader. A vote for an option that is behind brings it one vote closer, and a
+ * vote for a leader puts every other option one vote further behind. The margin is how far behind the closest
+ * option is, and it moves by at most one vote at a time. So on every path, the stop for C comes at the first
+ * time the margin goes above the largest margin seen so far, C-1. Keeping that largest margin in the state
+ * gives the stops of every C up to the largest one from a single run of the chain.<br><br>The chain is
+ * followed for a limited number of votes. An option too far behind to catch up within the votes left behaves
+ * the same however far behind it is, so such options share a state, and the states are kept in a sparse map.
+ * Whatever has not stopped by the last vote (or was in a state too unlikely to follow) is reported as
+ * unresolved.<br><br>The number of states grows quickly with the number of options and with C, so this
+ * is meant for small numbers of options. The number of options, the largest C and the maximum number of
+ * votes must fit a state in 63 bits.
+ *
+ * @author Andreas Lianos
+ */
+public class StoppingRuleEvaluator {
+
+    /**
+     * States less likely than this are not followed any further, and count as unresolved.
+     */
+    private static final double NEGLIGIBLE = 1e-15;
+    private final int maxVotes;
+    /**
+     * The results for every C up to the largest one worked out, per sorted distribution.
+     */
+    private final Map<String, Result[]> results = new ConcurrentHashMap<>();
+
+    /**
+     * The result of the stopping rule for one C.
+     */
+    public static final class Result {
+
+        private final double[] votesUsed;
+        private final double correct;
+
+        private Result( double[] votesUsed, double correct ) {
+            this.votesUsed = votesUsed;
+            this.correct = correct;
+        }
+
+        /**
+         * @return The probability that the rule stopped within the maximum number of votes.
+         */
+        public double getStopped() {
+            double stopped = 0;
+            for( double probability : votesUsed ) {
+                stopped += probability;
+            }
+            return stopped;
+        }
+
+        /**
+         * @return The probability that the rule had not stopped by the maximum number of votes.
+         */
+        public double getUnresolved() {
+            return Math.max( 0, 1 - getStopped() );
+        }
+
+        /**
+         * @return The probability that the rule stopped on the top option, given that it stopped.
+         */
+        public double getAccuracy() {
+            return correct / getStopped();
+        }
+
+        /**
+         * @return The expected number of votes used, given that the rule stopped.
+         */
+        public double getExpectedVotes() {
+            double votes = 0;
+            for( int n = 0; n < votesUsed.length; n++ ) {
+                votes += n * votesUsed[n];
+            }
+            return votes / getStopped();
+        }
+
+        /**
+         * @return The probability of stopping after exactly n votes, indexed by n.
+         */
+        public double[] getVotesUsed() {
+            return votesUsed.clone();
+        }
+    }
+
+    /**
+     * @param maxVotes How many votes to follow the stopping rule for.
+     */
+    public StoppingRuleEvaluator( int maxVotes ) {
+        this.maxVotes = maxVotes;
+    }
+
+    /**
+     * Evaluates the stopping rule on the given distribution.
+     *
+     * @param percentages The percentages of the options, in any order.
+     * @param C The margin the top option needs over the second.
+     * @return
+     */
+    public Result evaluate( int[] percentages, int C ) {
+        return evaluateAll( percentages, C )[C - 1];
+    }
+
+    /**
+     * Evaluates the stopping rule on the given distribution, for every C up to maxC at once.
+     *
+     * @param percentages The percentages of the options, in any order.
+     * @param maxC
+     * @return The results, indexed by C-1.
+     */
+    public Result[] evaluateAll( int[] percentages, int maxC ) {
+        int[] sorted = OptionServices.sortDescending( percentages );
+        String key = Arrays.toString( sorted );
+        Result[] cached = results.get( key );
+        if( cached == null || cached.length < maxC ) {
+            cached = compute( sorted, maxC );
+            results.put( key, cached );
+        }
+        return Arrays.copyOf( cached, maxC );
+    }
+
+    /**
+     * Evaluates the stopping rule over all the distributions {@link OptionServices#generate(int, int, int)}
+     * creates with the given arguments, for every C up to maxC. Each distribution is weighted by how likely it
+     * is to be generated. When there are too many distributions to list, the given number of generated
+     * distributions is averaged instead.
+     *
+     * @param numOfOptions
+     * @param minDifference
+     * @param maxDifference
+     * @param maxC
+     * @param samples How many distributions to average when they cannot be listed.
+     * @return The results, indexed by C-1.
+     */
+    public Result[] evaluatePriorAll( int numOfOptions, int minDifference, int maxDifference, int maxC, int samples ) {
+        List<Pair<int[], Double>> prior = OptionServices.listDistributions( numOfOptions, minDifference, maxDifference );
+        if( prior == null ) {
+            prior = new ArrayList<>();
+            DistributionSampler sampler = DistributionSampler.getInstance( numOfOptions, minDifference, maxDifference );
+            for( int sample = 0; sample < samples; sample++ ) {
+                prior.add( new Pair<>( sampler.sample(), 1.0 ) );
+            }
+        }
+        if( prior.isEmpty() ) {
+            throw new IllegalArgumentException( "No distribution of " + numOfOptions + " options can have a difference between " + minDifference + " and " + maxDifference );
+        }
+
+        double mass = 0;
+        for( Pair<int[], Double> distribution : prior ) {
+            mass += distribution.getValueB();
+        }
+        double[][] votesUsed = new double[maxC][maxVotes + 1];
+        double[] correct = new double[maxC];
+        for( Pair<int[], Double> distribution : prior ) {
+            double weight = distribution.getValueB() / mass;
+            Result[] result = evaluateAll( distribution.getValueA(), maxC );
+            for( int c = 0; c < maxC; c++ ) {
+                correct[c] += weight * result[c].correct;
+                for( int n = 0; n <= maxVotes; n++ ) {
+                    votesUsed[c][n] += weight * result[c].votesUsed[n];
+                }
+            }
+        }
+
+        Result[] total = new Result[maxC];
+        for( int c = 0; c < maxC; c++ ) {
+            total[c] = new Result( votesUsed[c], correct[c] );
+        }
+        return total;
+    }
+
+    /**
+     * @param sorted The percentages, largest first. The first option is the correct one.
+     */
+    private Result[] compute( int[] sorted, int maxC ) {
+        //options that never get a vote stay at 0 votes, which is never ahead of an option that can get votes
+        int options = 0;
+        while( options < sorted.length && sorted[options] > 0 ) {
+            options++;
+        }
+        double[] probabilities = new double[options];
+        for( int i = 0; i < options; i++ ) {
+            probabilities[i] = sorted[i] / 100.0;
+        }
+
+        double[][] votesUsed = new double[maxC][maxVotes + 1];
+        double[] correct = new double[maxC];
+        if( options == 1 ) {
+            //the only option that gets votes is C ahead after C votes
+            for( int c = 0; c < maxC && c + 1 <= maxVotes; c++ ) {
+                votesUsed[c][c + 1] = 1;
+                correct[c] = 1;
+            }
+        }
+        else {
+            follow( probabilities, maxC, votesUsed, correct );
+        }
+
+        Result[] computed = new Result[maxC];
+        for( int c = 0; c < maxC; c++ ) {
+            computed[c] = new Result( votesUsed[c], correct[c] );
+        }
+        return computed;
+    }
+
+    /**
+     * Runs the chain. A state is how far behind the leader each option is, plus the largest margin so far,
+     * packed in a long.
+     */
+    private void follow( double[] probabilities, int maxC, double[][] votesUsed, double[] correct ) {
+        int options = probabilities.length;
+        int behindBits = 64 - Long.numberOfLeadingZeros( maxC + maxVotes );
+        int marginBits = 64 - Long.numberOfLeadingZeros( maxC );
+        if( options * behindBits + marginBits > 63 ) {
+            throw new IllegalArgumentException( "Too many options (" + options + ") for a largest C of " + maxC + " and " + maxVotes + " votes" );
+        }
+        long behindMask = (1L << behindBits) - 1;
+
+        Map<Long, Double> states = new HashMap<>();
+        states.put( 0L, 1.0 ); //no votes yet: nobody is behind, and the margin has never been above 0
+        int[] behind = new int[options];
+        for( int vote = 1; vote <= maxVotes && !states.isEmpty(); vote++ ) {
+            //an option this far behind cannot get within maxC of the leader in the votes left
+            int farBehind = maxC + (maxVotes - vote);
+            Map<Long, Double> next = new HashMap<>();
+            for( Map.Entry<Long, Double> state : states.entrySet() ) {
+                long packed = state.getKey();
+                int largestMargin = (int) (packed >>> (options * behindBits));
+                for( int i = options - 1; i >= 0; i-- ) {
+                    behind[i] = (int) (packed & behindMask);
+                    packed >>>= behindBits;
+                }
+
+                for( int option = 0; option < options; option++ ) {
+                    double probability = state.getValue() * probabilities[option];
+                    //vote for this option
+                    long key = 0;
+                    int margin = Integer.MAX_VALUE;
+                    int leader = -1;
+                    for( int i = 0; i < options; i++ ) {
+                        int distance;
+                        if( behind[option] > 0 ) {
+                            distance = (i == option ? behind[i] - 1 : behind[i]);
+                        }
+                        else {
+                            distance = (i == option ? 0 : behind[i] + 1);
+                        }
+                        distance = Math.min( distance, farBehind );
+                        if( distance == 0 && leader < 0 ) {
+                            leader = i;
+                        }
+                        else if( distance < margin ) {
+                            margin = distance;
+                        }
+                        key = (key << behindBits) | distance;
+                    }
+
+                    int newLargestMargin = largestMargin;
+                    if( margin > largestMargin ) {
+                        //the first time the margin reaches this C: stop for this C
+                        votesUsed[margin - 1][vote] += probability;
+                        if( leader == 0 ) {
+                            correct[margin - 1] += probability;
+                        }
+                        if( margin == maxC ) {
+                            continue;
+                        }
+                        newLargestMargin = margin;
+                    }
+                    if( probability < NEGLIGIBLE ) {
+                        continue;
+                    }
+                    key |= ((long) newLargestMargin) << (options * behindBits);
+                    Double sum = next.get( key );
+                    next.put( key, (sum == null ? probability : sum + probability) );
+                }
+            }
+            states = next;
+        }
+    }
+}
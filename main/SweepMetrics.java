@@ -0,0 +1,288 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live metrics of a running sweep: iterations completed, votes drawn, distributions generated and rejected,
+ * and how long each cell (test) has been running. The counters are {@link LongAdder}s, added to once per chunk
+ * of iterations (or per generated distribution), so that keeping them costs next to nothing.
+ * <p>
+ * The metrics can be printed periodically (see {@link #startReporter(long)}), and are published over JMX as
+ * {@value #OBJECT_NAME}. The scheduler and the chunks also record flight recorder events ({@link CellEvent},
+ * {@link ChunkEvent}).
+ *
+ * @author Andreas Lianos
+ */
+public class SweepMetrics implements SweepMetricsMBean {
+
+    /**
+     * The JMX name of the metrics.
+     */
+    public static final String OBJECT_NAME = "minimumAnswers:type=SweepMetrics";
+    private static final SweepMetrics INSTANCE = new SweepMetrics();
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder votes = new LongAdder();
+    private final LongAdder generateCalls = new LongAdder();
+    private final LongAdder generateAttempts = new LongAdder();
+    private final DoubleAdder plannedCost = new DoubleAdder();
+    private final DoubleAdder finishedCost = new DoubleAdder();
+    private final AtomicLong cellIds = new AtomicLong();
+    private final Map<Long, Cell> running = new ConcurrentHashMap<>();
+    private final Map<Long, Cell> finished = new ConcurrentHashMap<>();
+    private final long start = System.nanoTime();
+    private ScheduledExecutorService reporter;
+
+    private SweepMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( this, new ObjectName( OBJECT_NAME ) );
+        } catch( JMException e ) {
+            //the metrics still work, only not over JMX
+            e.printStackTrace();
+        }
+    }
+
+    public static SweepMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Notes a chunk of iterations that completed.
+     *
+     * @param iterations
+     * @param votes How many votes the iterations drew
+     */
+    public void addIterations( long iterations, long votes ) {
+        this.iterations.add( iterations );
+        this.votes.add( votes );
+    }
+
+    /**
+     * Notes a distribution that {@link OptionServices#generate(int, int, int)} returned.
+     *
+     * @param attempts How many distributions were rolled to find it (the rest were rejected)
+     */
+    public void addGenerated( int attempts ) {
+        generateCalls.increment();
+        generateAttempts.add( attempts );
+    }
+
+    /**
+     * Notes the cost of cells that are going to run, for the estimate of the time left.
+     *
+     * @param cost As estimated by {@link CostEstimate}
+     */
+    public void addPlannedCost( double cost ) {
+        plannedCost.add( cost );
+    }
+
+    /**
+     * @param name
+     * @param cost As estimated by {@link CostEstimate}, NaN if not known
+     * @return The id of the cell, to pass to {@link #cellFinished(long)}
+     */
+    public long cellStarted( String name, double cost ) {
+        long id = cellIds.incrementAndGet();
+        running.put( id, new Cell( name, cost ) );
+        return id;
+    }
+
+    /**
+     * @param id As returned by {@link #cellStarted(String, double)}
+     */
+    public void cellFinished( long id ) {
+        Cell cell = running.remove( id );
+        if( cell != null ) {
+            cell.end = System.nanoTime();
+            finished.put( id, cell );
+            if( !Double.isNaN( cell.cost ) ) {
+                finishedCost.add( cell.cost );
+            }
+        }
+    }
+
+    /**
+     * Prints the metrics to the standard error every so often, on a daemon thread, until
+     * {@link #stopReporter()}.
+     *
+     * @param periodSeconds
+     */
+    public synchronized void startReporter( long periodSeconds ) {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "SweepMetrics" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        reporter.scheduleAtFixedRate( () -> System.err.println( report() ), periodSeconds, periodSeconds, TimeUnit.SECONDS );
+    }
+
+    public synchronized void stopReporter() {
+        if( reporter != null ) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * @return A line with the throughput, the progress and the time left, and the cell that has been running
+     * the longest.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "[" ).append( formatSeconds( getElapsedSeconds() ) ).append( "] " );
+        sb.append( String.format( "%d iterations (%.0f/s), %d votes (%.0f/s)",
+                getIterationsCompleted(), getIterationsPerSecond(), getVotesDrawn(), getVotesPerSecond() ) );
+        long attempts = generateAttempts.sum();
+        if( attempts > 0 ) {
+            sb.append( String.format( ", generate rejected %.1f%% of %d", 100d * getGenerateRejections() / attempts, attempts ) );
+        }
+        sb.append( String.format( ", cells %d done %d running", getCellsFinished(), getCellsRunning() ) );
+        long eta = getEtaSeconds();
+        sb.append( ", ETA " ).append( eta < 0 ? "unknown" : formatSeconds( eta ) );
+        Cell longest = null;
+        for( Cell cell : running.values() ) {
+            if( longest == null || cell.start < longest.start ) {
+                longest = cell;
+            }
+        }
+        if( longest != null ) {
+            sb.append( ", longest running " ).append( longest.name ).append( " for " )
+                    .append( formatSeconds( (System.nanoTime() - longest.start) / 1000000000L ) );
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long getIterationsCompleted() {
+        return iterations.sum();
+    }
+
+    @Override
+    public long getVotesDrawn() {
+        return votes.sum();
+    }
+
+    @Override
+    public long getGenerateCalls() {
+        return generateCalls.sum();
+    }
+
+    @Override
+    public long getGenerateRejections() {
+        return generateAttempts.sum() - generateCalls.sum();
+    }
+
+    @Override
+    public double getIterationsPerSecond() {
+        return getIterationsCompleted() / Math.max( 1e-9, getElapsedNanos() / 1e9 );
+    }
+
+    @Override
+    public double getVotesPerSecond() {
+        return getVotesDrawn() / Math.max( 1e-9, getElapsedNanos() / 1e9 );
+    }
+
+    @Override
+    public int getCellsRunning() {
+        return running.size();
+    }
+
+    @Override
+    public int getCellsFinished() {
+        return finished.size();
+    }
+
+    /**
+     * Estimated from the cost of the cells that finished so far, and the time they took. Cells of unknown
+     * cost are left out.
+     */
+    @Override
+    public long getEtaSeconds() {
+        double done = finishedCost.sum();
+        if( done <= 0 ) {
+            return -1;
+        }
+        double left = Math.max( 0, plannedCost.sum() - done );
+        return (long) (left * getElapsedNanos() / done / 1e9);
+    }
+
+    @Override
+    public String[] getRunningCells() {
+        long now = System.nanoTime();
+        List<String> cells = new ArrayList<>();
+        for( Cell cell : running.values() ) {
+            cells.add( cell.name + ": " + (now - cell.start) / 1000000000L );
+        }
+        return cells.toArray( new String[0] );
+    }
+
+    @Override
+    public String[] getFinishedCells() {
+        List<String> cells = new ArrayList<>();
+        for( Cell cell : finished.values() ) {
+            cells.add( cell.name + ": " + (cell.end - cell.start) / 1000000000L );
+        }
+        return cells.toArray( new String[0] );
+    }
+
+    private long getElapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    private long getElapsedSeconds() {
+        return getElapsedNanos() / 1000000000L;
+    }
+
+    private static String formatSeconds( long seconds ) {
+        return (seconds >= 3600 ? seconds / 3600 + "h" : "")
+                + (seconds >= 60 ? String.format( "%02dm", (seconds / 60) % 60 ) : "")
+                + String.format( "%02ds", seconds % 60 );
+    }
+
+    /**
+     * A test of the sweep.
+     */
+    private static final class Cell {
+
+        private final String name;
+        private final double cost;
+        private final long start = System.nanoTime();
+        private volatile long end;
+
+        private Cell( String name, double cost ) {
+            this.name = name;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * The live metrics of a sweep, as published over JMX (see {@link SweepMetrics}).
+ *
+ * @author Andreas Lianos
+ */
+public interface SweepMetricsMBean {
+
+    long getIterationsCompleted();
+
+    long getVotesDrawn();
+
+    /**
+     * @return How many distributions {@link OptionServices#generate(int, int, int)} returned.
+     */
+    long getGenerateCalls();
+
+    /**
+     * @return How many distributions {@link OptionServices#generate(int, int, int)} rolled and rejected.
+     */
+    long getGenerateRejections();
+
+    double getIterationsPerSecond();
+
+    double getVotesPerSecond();
+
+    int getCellsRunning();
+
+    int getCellsFinished();
+
+    /**
+     * @return The seconds the sweep is estimated to still need, -1 if not known yet.
+     */
+    long getEtaSeconds();
+
+    /**
+     * @return The running cells, with the seconds each has been running for.
+     */
+    String[] getRunningCells();
+
+    /**
+     * @return The finished cells, with the seconds each took.
+     */
+    String[] getFinishedCells();
+}
@@ -0,0 +1,152 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs a sweep of tests on a work-stealing pool with a thread per core. Tests that can estimate their cost
+ * (see {@link CostEstimate}) are started in order of decreasing cost, so that the sweep does not end on a tail
+ * of a few big tests. Tests that cannot are started first, as they might be the biggest. Tests that split their
+ * iterations in fork/join chunks spread those chunks in the same pool, where idle threads steal them.
+ *
+ * @author Andreas Lianos
+ */
+public class SweepScheduler {
+
+    private final int threads;
+
+    /**
+     * A scheduler with as many threads as the machine has cores.
+     */
+    public SweepScheduler() {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param threads How many threads to run the tests on
+     */
+    public SweepScheduler( int threads ) {
+        this.threads = threads;
+    }
+
+    /**
+     * Orders the tests by decreasing estimated cost. Tests without an estimate come first, in the order given.
+     *
+     * @param tests
+     * @return A new, ordered list
+     */
+    public List<Runnable> order( List<Runnable> tests ) {
+        List<Runnable> result = new ArrayList<>();
+        for( Integer index : order( estimateCosts( tests ) ) ) {
+            result.add( tests.get( index ) );
+        }
+        return result;
+    }
+
+    /**
+     * Runs all the tests, most expensive first, and waits until they are all done. The progress of the tests
+     * is kept in the {@link SweepMetrics}, and each test is recorded as a {@link CellEvent}.
+     *
+     * @param tests
+     * @throws InterruptedException if interrupted while waiting. The tests still running are cancelled.
+     */
+    public void run( List<Runnable> tests ) throws InterruptedException {
+        double[] costs = estimateCosts( tests );
+        for( double cost : costs ) {
+            if( !Double.isInfinite( cost ) ) {
+                SweepMetrics.getInstance().addPlannedCost( cost );
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool( threads );
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        try {
+            for( Integer index : order( costs ) ) {
+                final Runnable test = tests.get( index );
+                final double cost = costs[index];
+                tasks.add( pool.submit( () -> runCell( test, cost ) ) );
+            }
+            for( ForkJoinTask<?> task : tasks ) {
+                try {
+                    task.get();
+                } catch( ExecutionException e ) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void runCell( Runnable test, double cost ) {
+        CellEvent event = new CellEvent();
+        event.begin();
+        long id = SweepMetrics.getInstance().cellStarted( test.toString(), (Double.isInfinite( cost ) ? Double.NaN : cost) );
+        try {
+            test.run();
+        } finally {
+            SweepMetrics.getInstance().cellFinished( id );
+            event.end();
+            if( event.shouldCommit() ) {
+                event.test = test.toString();
+                event.cost = cost;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @param tests
+     * @return The estimated cost of each test, infinite for tests without an estimate.
+     */
+    private static double[] estimateCosts( List<Runnable> tests ) {
+        double[] costs = new double[tests.size()];
+        for( int i = 0; i < costs.length; i++ ) {
+            Runnable test = tests.get( i );
+            costs[i] = (test instanceof CostEstimate ? ((CostEstimate) test).estimateCost() : Double.POSITIVE_INFINITY);
+        }
+        return costs;
+    }
+
+    /**
+     * @param costs
+     * @return The indexes of the costs, by decreasing cost.
+     */
+    private static List<Integer> order( final double[] costs ) {
+        List<Integer> indexes = new ArrayList<>();
+        for( int i = 0; i < costs.length; i++ ) {
+            indexes.add( i );
+        }
+        //a stable sort, so equally expensive tests keep their order
+        Collections.sort( indexes, new Comparator<Integer>() {
+            @Override
+            public int compare( Integer a, Integer b ) {
+                return Double.compare( costs[b], costs[a] );
+            }
+        } );
+        return indexes;
+    }
+}
@@ -0,0 +1,148 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+/**
+ * Samples ranks from a Zipf distribution, where the option of rank k (counting from 1) is drawn with
+ * probability proportional to 1/k^exponent. Ranks are sampled by W. Hormann and G. Derflinger's
+ * rejection-inversion ("Rejection-inversion to generate variates from monotone discrete distributions",
+ * 1996), in (expected) constant time and memory regardless of the number of options. The uniform numbers come
+ * from {@link LoggedRandom#rollDouble()}.
+ *
+ * @author Andreas Lianos
+ */
+public final class ZipfSampler {
+
+    private final int numOfOptions;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNumOfOptions;
+    private final double s;
+
+    /**
+     * @param numOfOptions How many options (ranks) there are, at least 1
+     * @param exponent How skewed the distribution is, above 0. The bigger, the more the first ranks dominate.
+     */
+    public ZipfSampler( int numOfOptions, double exponent ) {
+        if( numOfOptions < 1 ) {
+            throw new IllegalArgumentException( "A Zipf distribution needs at least one option (" + numOfOptions + " given)" );
+        }
+        if( !(exponent > 0) ) {
+            throw new IllegalArgumentException( "The exponent of a Zipf distribution must be above 0 (" + exponent + " given)" );
+        }
+        this.numOfOptions = numOfOptions;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral( 1.5 ) - 1;
+        this.hIntegralNumOfOptions = hIntegral( numOfOptions + 0.5 );
+        this.s = 2 - hIntegralInverse( hIntegral( 2.5 ) - h( 2 ) );
+    }
+
+    /**
+     * Samples a rank.
+     *
+     * @return The index of the rank, between [0-(numOfOptions-1)]. 0 is the most likely.
+     */
+    public int sample() {
+        LoggedRandom random = LoggedRandom.getInstance();
+        while( true ) {
+            double u = hIntegralNumOfOptions + random.rollDouble() * (hIntegralX1 - hIntegralNumOfOptions);
+            double x = hIntegralInverse( u );
+            int k = (int) (x + 0.5);
+            if( k < 1 ) {
+                k = 1;
+            }
+            else if( k > numOfOptions ) {
+                k = numOfOptions;
+            }
+            //most samples are accepted straight away, the rest are checked against the hat
+            if( k - x <= s || u >= hIntegral( k + 0.5 ) - h( k ) ) {
+                return k - 1;
+            }
+        }
+    }
+
+    /**
+     * Works out the probability of a rank. This adds up all the ranks, so it takes time in the number of
+     * options: work it out once, not while sampling.
+     *
+     * @param index The index of the rank, as returned by {@link #sample()}
+     * @return
+     */
+    public double getProbability( int index ) {
+        double total = 0;
+        for( int k = numOfOptions; k >= 1; k-- ) {
+            total += h( k );
+        }
+        return h( index + 1 ) / total;
+    }
+
+    public int getNumOfOptions() {
+        return numOfOptions;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+
+    /**
+     * 1/x^exponent, the (unnormalised) probability of rank x.
+     */
+    private double h( double x ) {
+        return Math.exp( -exponent * Math.log( x ) );
+    }
+
+    /**
+     * The integral of {@link #h(double)}, (x^(1-exponent) - 1)/(1-exponent), written so that it also holds
+     * for an exponent of 1.
+     */
+    private double hIntegral( double x ) {
+        double logX = Math.log( x );
+        return helper2( (1 - exponent) * logX ) * logX;
+    }
+
+    private double hIntegralInverse( double x ) {
+        double t = x * (1 - exponent);
+        if( t < -1 ) {
+            //rounding errors
+            t = -1;
+        }
+        return Math.exp( helper1( t ) * x );
+    }
+
+    /**
+     * log(1+x)/x, accurate near 0 as well.
+     */
+    private static double helper1( double x ) {
+        if( Math.abs( x ) > 1e-8 ) {
+            return Math.log1p( x ) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * (exp(x)-1)/x, accurate near 0 as well.
+     */
+    private static double helper2( double x ) {
+        if( Math.abs( x ) > 1e-8 ) {
+            return Math.expm1( x ) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -21,11 +21,13 @@ package tests;
 
 import java.util.Map;
 import minimumAnswers.main.AnswerGenerator;
-import minimumAnswers.libraries.OccurrenceSet;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.libraries.VoteCounter;
 
 /**
- * Given a generator and a number of answers to draw, prints out how close the generated results are to the
- * distribution. We do this to see if the random generator consistently favours a roll or not.
+ * Given a generator and a number of answers to draw, publishes how close the generated results are to the
+ * distribution, a record per option. We do this to see if the random generator consistently favours a roll or
+ * not.
  */
 public class AnsweringFairnessTest implements Runnable {
 
@@ -39,15 +41,19 @@ public class AnsweringFairnessTest implements Runnable {
 
     @Override
     public void run() {
-        OccurrenceSet<String> votes = new OccurrenceSet<>(); //specific number
-        for( int n = 0; n < N; n++ ) {
-            votes.add( generator.draw() );
-        }
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "AnsweringFairnessTest", N ) );
+
+        //draw every answer (rather than sampling the counts), in blocks
+        VoteCounter votes = new VoteCounter( generator.getOptionsCopy().size() );
+        generator.drawBatch( N, votes );
         Map<String, Integer> options = generator.getOptionsCopy();
 
-        for( String option : votes ) {
-            Double estimated = votes.getOccurrences( option ) * 100 / (N + 0.0);
-            System.out.format( "%5s|%3d| %2f\n", option, options.get( option ), estimated );
+        for( int i = 0; i < votes.size(); i++ ) {
+            String option = generator.getOptionName( i );
+            double estimated = votes.getVotes( i ) * 100 / (N + 0.0);
+            String line = String.format( "%5s|%3d| %2f", option, options.get( option ), estimated );
+            ResultSink.getInstance().publish( new ResultRecord( "AnsweringFairnessTest", votes.size(), 'I', i, N,
+                    estimated, Double.NaN, Double.NaN, line ) );
         }
     }
 }
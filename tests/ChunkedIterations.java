@@ -0,0 +1,189 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import minimumAnswers.main.ChunkEvent;
+import minimumAnswers.main.SweepMetrics;
+
+/**
+ * Splits the iterations of a test into chunks and runs them as fork/join tasks, so that a single test can use
+ * all the cores. Every chunk keeps its own {@link ResultAccumulator}, and these are merged as the chunks
+ * finish. If the test has a cell in the {@link ResultStore}, every chunk is stored as it finishes, and chunks
+ * already stored are not run again.
+ */
+public class ChunkedIterations extends RecursiveTask<ResultAccumulator> {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * How many iterations make a chunk. Big enough to make forking a task negligible, small enough to spread
+     * a test over many cores.
+     */
+    public static final int CHUNK_SIZE = 10000;
+    private final ChunkedTest test;
+    private final int iterations;
+    private final int fromChunk;
+    private final int toChunk;
+    private final ResultStore.Cell cell;
+
+    private ChunkedIterations( ChunkedTest test, int iterations, int fromChunk, int toChunk, ResultStore.Cell cell ) {
+        this.test = test;
+        this.cell = cell;
+        this.iterations = iterations;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+    }
+
+    /**
+     * Runs all the iterations of the test, in chunks of {@value #CHUNK_SIZE}. When called from a fork/join
+     * pool the chunks run in that pool, otherwise in the common pool.
+     *
+     * @param test
+     * @param iterations How many iterations to run in total
+     * @return What all the iterations found
+     */
+    public static ResultAccumulator run( ChunkedTest test, int iterations ) {
+        return run( test, iterations, null );
+    }
+
+    /**
+     * Runs the iterations of the test that are not in the store, and stores what they find. If the whole test
+     * is in the store, nothing runs.
+     *
+     * @param test
+     * @param iterations How many iterations to run in total
+     * @param cell Where the results of the test are stored, null to not store them
+     * @return What all the iterations found
+     */
+    public static ResultAccumulator run( ChunkedTest test, int iterations, ResultStore.Cell cell ) {
+        if( cell != null ) {
+            ResultAccumulator stored = cell.getResult();
+            if( stored != null ) {
+                return stored;
+            }
+        }
+        int chunks = getChunks( iterations );
+        ChunkedIterations task = new ChunkedIterations( test, iterations, 0, chunks, cell );
+        ResultAccumulator result = (ForkJoinTask.inForkJoinPool()
+                ? task.invoke()
+                : ForkJoinPool.commonPool().invoke( task ));
+        if( cell != null ) {
+            cell.putResult( result );
+        }
+        return result;
+    }
+
+    /**
+     * Runs the iterations of the test in rounds of chunks, until the results are as precise as required or all
+     * the iterations have run. The first round is a single chunk, to estimate the variances. Every later round
+     * runs about as many iterations as {@link Precision#getIterationsNeeded(ResultAccumulator)} says are still
+     * needed (at most a chunk per thread, or as many as have already run if more), so a test that is precise
+     * enough early stops early, and stops at most a round after it is precise enough.
+     *
+     * @param test
+     * @param iterations The most iterations to run
+     * @param cell Where the results of the test are stored, null to not store them
+     * @param precision How precise the results should be, null to run all the iterations
+     * @return What the iterations found. {@link ResultAccumulator#getIterations()} tells how many ran.
+     */
+    public static ResultAccumulator run( ChunkedTest test, int iterations, ResultStore.Cell cell, Precision precision ) {
+        if( precision == null ) {
+            return run( test, iterations, cell );
+        }
+        if( cell != null ) {
+            ResultAccumulator stored = cell.getResult();
+            if( stored != null ) {
+                return stored;
+            }
+        }
+        int chunks = getChunks( iterations );
+        int threads = (ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.commonPool().getParallelism());
+        ResultAccumulator result = new ResultAccumulator();
+        int done = 0;
+        while( done < chunks && (done == 0 || !precision.isMet( result )) ) {
+            int round = 1;
+            if( done > 0 ) {
+                long needed = precision.getIterationsNeeded( result ) - result.getIterations();
+                long neededChunks = (needed + CHUNK_SIZE - 1) / CHUNK_SIZE;
+                round = (int) Math.max( 1, Math.min( Math.max( done, threads ), neededChunks ) );
+            }
+            round = Math.min( round, chunks - done );
+            ChunkedIterations task = new ChunkedIterations( test, iterations, done, done + round, cell );
+            result.merge( ForkJoinTask.inForkJoinPool()
+                    ? task.invoke()
+                    : ForkJoinPool.commonPool().invoke( task ) );
+            done += round;
+        }
+        if( cell != null ) {
+            cell.putResult( result );
+        }
+        return result;
+    }
+
+    /**
+     * @param iterations
+     * @return How many chunks the iterations are split in.
+     */
+    public static int getChunks( int iterations ) {
+        return Math.max( 1, (iterations + CHUNK_SIZE - 1) / CHUNK_SIZE );
+    }
+
+    /**
+     * @param iterations How many iterations to run in total
+     * @param chunk
+     * @return How many of the iterations fall in the given chunk.
+     */
+    public static int getChunkIterations( int iterations, int chunk ) {
+        return Math.max( 0, Math.min( CHUNK_SIZE, iterations - chunk * CHUNK_SIZE ) );
+    }
+
+    @Override
+    protected ResultAccumulator compute() {
+        if( toChunk - fromChunk == 1 ) {
+            ResultAccumulator result = (cell == null ? null : cell.getChunk( fromChunk ));
+            if( result == null ) {
+                ChunkEvent event = new ChunkEvent();
+                event.begin();
+                result = test.runChunk( fromChunk, getChunkIterations( iterations, fromChunk ) );
+                SweepMetrics.getInstance().addIterations( result.getIterations(), result.getVotesUsed() );
+                event.end();
+                if( event.shouldCommit() ) {
+                    event.chunk = fromChunk;
+                    event.iterations = result.getIterations();
+                    event.votes = result.getVotesUsed();
+                    event.commit();
+                }
+                if( cell != null ) {
+                    cell.putChunk( fromChunk, result );
+                }
+            }
+            return result;
+        }
+        int middle = (fromChunk + toChunk) >>> 1;
+        ChunkedIterations second = new ChunkedIterations( test, iterations, middle, toChunk, cell );
+        second.fork();
+        ResultAccumulator first = new ChunkedIterations( test, iterations, fromChunk, middle, cell ).compute();
+        return first.merge( second.join() );
+    }
+}
@@ -0,0 +1,135 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import minimumAnswers.main.ChunkEvent;
+import minimumAnswers.main.SweepMetrics;
+
+/**
+ * Splits the iterations of a sweep into chunks and runs them as fork/join tasks, as {@link ChunkedIterations}
+ * does for a single test. Every result of the sweep has its own cell in the {@link ResultStore}, and a chunk
+ * is only skipped if it is stored for all of them.
+ */
+public class ChunkedSweep extends RecursiveTask<ResultAccumulator[]> {
+
+    private static final long serialVersionUID = 1L;
+    private final ChunkedSweepTest test;
+    private final int iterations;
+    private final int fromChunk;
+    private final int toChunk;
+    private final ResultStore.Cell[] cells;
+
+    private ChunkedSweep( ChunkedSweepTest test, int iterations, int fromChunk, int toChunk, ResultStore.Cell[] cells ) {
+        this.test = test;
+        this.cells = cells;
+        this.iterations = iterations;
+        this.fromChunk = fromChunk;
+        this.toChunk = toChunk;
+    }
+
+    /**
+     * Runs the iterations of the sweep that are not in the store, and stores what they find. If the whole
+     * sweep is in the store, nothing runs.
+     *
+     * @param test
+     * @param iterations How many iterations to run in total
+     * @param cells Where each result of the sweep is stored (in the order the test returns them), null to not
+     * store them
+     * @return What all the iterations found, one accumulator per result
+     */
+    public static ResultAccumulator[] run( ChunkedSweepTest test, int iterations, ResultStore.Cell[] cells ) {
+        if( cells != null ) {
+            ResultAccumulator[] stored = new ResultAccumulator[cells.length];
+            for( int i = 0; i < cells.length && stored != null; i++ ) {
+                stored[i] = cells[i].getResult();
+                if( stored[i] == null ) {
+                    stored = null;
+                }
+            }
+            if( stored != null ) {
+                return stored;
+            }
+        }
+        int chunks = ChunkedIterations.getChunks( iterations );
+        ChunkedSweep task = new ChunkedSweep( test, iterations, 0, chunks, cells );
+        ResultAccumulator[] results = (ForkJoinTask.inForkJoinPool()
+                ? task.invoke()
+                : ForkJoinPool.commonPool().invoke( task ));
+        if( cells != null ) {
+            for( int i = 0; i < cells.length; i++ ) {
+                cells[i].putResult( results[i] );
+            }
+        }
+        return results;
+    }
+
+    @Override
+    protected ResultAccumulator[] compute() {
+        if( toChunk - fromChunk == 1 ) {
+            return runChunk( fromChunk );
+        }
+        int middle = (fromChunk + toChunk) >>> 1;
+        ChunkedSweep second = new ChunkedSweep( test, iterations, middle, toChunk, cells );
+        second.fork();
+        ResultAccumulator[] first = new ChunkedSweep( test, iterations, fromChunk, middle, cells ).compute();
+        ResultAccumulator[] rest = second.join();
+        for( int i = 0; i < first.length; i++ ) {
+            first[i].merge( rest[i] );
+        }
+        return first;
+    }
+
+    private ResultAccumulator[] runChunk( int chunk ) {
+        if( cells != null ) {
+            ResultAccumulator[] stored = new ResultAccumulator[cells.length];
+            for( int i = 0; i < cells.length && stored != null; i++ ) {
+                stored[i] = cells[i].getChunk( chunk );
+                if( stored[i] == null ) {
+                    stored = null;
+                }
+            }
+            if( stored != null ) {
+                return stored;
+            }
+        }
+        ChunkEvent event = new ChunkEvent();
+        event.begin();
+        ResultAccumulator[] results = test.runChunk( chunk, ChunkedIterations.getChunkIterations( iterations, chunk ) );
+        //the votes of the largest N (or C) are all the votes drawn
+        ResultAccumulator last = results[results.length - 1];
+        SweepMetrics.getInstance().addIterations( last.getIterations(), last.getVotesUsed() );
+        event.end();
+        if( event.shouldCommit() ) {
+            event.chunk = chunk;
+            event.iterations = last.getIterations();
+            event.votes = last.getVotesUsed();
+            event.commit();
+        }
+        if( cells != null ) {
+            for( int i = 0; i < cells.length; i++ ) {
+                cells[i].putChunk( chunk, results[i] );
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,38 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+/**
+ * A test that finds several results at once (e.g. for every N of a sweep), and whose iterations can run in
+ * independent chunks (see {@link ChunkedSweep}).
+ */
+public interface ChunkedSweepTest {
+
+    /**
+     * Runs a chunk of iterations. Chunks may run at the same time on different threads, so a chunk must only
+     * use its own state.
+     *
+     * @param chunk The index of the chunk. A chunk should roll on its own random stream, derived from this
+     * index, so that it finds the same results whichever thread runs it.
+     * @param iterations How many iterations the chunk runs
+     * @return What the iterations found, one accumulator per result, always in the same order
+     */
+    ResultAccumulator[] runChunk( int chunk, int iterations );
+}
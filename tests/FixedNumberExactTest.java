@@ -0,0 +1,57 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.main.PluralityEvaluator;
+
+/**
+ * The exact counterpart of {@link FixedNumberTest}: works out the win and draw rates of plurality voting over N
+ * answers with {@link PluralityEvaluator}, instead of simulating them. Prints the same columns.
+ */
+public class FixedNumberExactTest implements Runnable {
+
+    /**
+     * Shared by all the tests, so that the distributions and results worked out for one N are reused by the
+     * others.
+     */
+    private static final PluralityEvaluator EVALUATOR = new PluralityEvaluator();
+    private final int O; //Number of Options
+    private final int N; //Number of answers to get
+
+    public FixedNumberExactTest( int N, int O ) {
+        this.N = N;
+        this.O = O;
+    }
+
+    @Override
+    public void run() {
+        //require at least 1% difference between the winning option and the next, as the simulation does
+        double[] result = EVALUATOR.evaluatePrior( O, 1, 100, N );
+
+        //Publish it, the sink prints it out
+        String line = String.format( "%1d\t%4d\t%.2f\t%.2f",
+                O,
+                N,
+                GenericServices.round( result[0] * 100, 2 ),
+                GenericServices.round( result[1] * 100, 2 ) );
+        ResultSink.getInstance().publish( new ResultRecord( "FixedNumberExactTest", O, 'N', N, 0, result[0] * 100,
+                result[1] * 100, N, line ) );
+    }
+}
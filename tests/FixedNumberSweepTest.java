@@ -0,0 +1,123 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.libraries.VoteCounter;
+import minimumAnswers.main.AnswerGenerator;
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+
+/**
+ * Does what a {@link FixedNumberTest} does for every N from minN to maxN, in a single pass. Each iteration draws
+ * maxN votes one by one, and the first N of them are the votes of the test with N answers, so plurality is
+ * scored at every N on the way. All the N share the same generators and votes (common random numbers), so
+ * the differences between them are smoother than those of separate tests.
+ */
+public class FixedNumberSweepTest implements Runnable, ChunkedSweepTest, CostEstimate {
+
+    public Thread t;
+    private final int O; //Number of Options
+    private final int minN; //Smallest number of answers to get
+    private final int maxN; //Largest number of answers to get
+    private final int iterations; //How many times to repeat the test
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
+
+    public FixedNumberSweepTest( int iterations, int minN, int maxN, int O ) {
+        this.iterations = iterations;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.O = O;
+        t = new Thread( this );
+    }
+
+    @Override
+    public void run() {
+        //run the iterations in chunks, on all the cores, keeping what they find in the results store
+        ResultStore.Cell[] cells = null;
+        if( ResultStore.getInstance() != null ) {
+            cells = new ResultStore.Cell[maxN - minN + 1];
+            for( int N = minN; N <= maxN; N++ ) {
+                cells[N - minN] = ResultStore.getCell( "FixedNumberSweepTest " + minN + "-" + maxN, O, N, iterations );
+            }
+        }
+        ResultAccumulator[] results = ChunkedSweep.run( this, iterations, cells );
+
+        //Publish them as separate FixedNumberTests would, the sink prints them out
+        for( int N = minN; N <= maxN; N++ ) {
+            ResultAccumulator result = results[N - minN];
+            String line = String.format( "%1d\t%4d\t%.2f\t%.2f",
+                    O,
+                    N,
+                    GenericServices.round( result.getWinPercentage(), 2 ),
+                    GenericServices.round( result.getDrawPercentage(), 2 ) );
+            ResultSink.getInstance().publish( new ResultRecord( "FixedNumberSweepTest", O, 'N', N, result, line ) );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FixedNumberSweepTest O=" + O + " N=" + minN + "-" + maxN;
+    }
+
+    @Override
+    public double estimateCost() {
+        //each iteration picks a generator and draws maxN votes
+        return (double) iterations * (O + maxN);
+    }
+
+    @Override
+    public ResultAccumulator[] runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "FixedNumberSweepTest", O, minN, maxN, this.iterations, chunk ) );
+
+        //pick ready made generators, if possible
+        GeneratorPool pool = GeneratorPool.getInstance( O, 1, 100, SAMPLED_POOLS );
+
+        ResultAccumulator[] accumulators = new ResultAccumulator[maxN - minN + 1];
+        for( int i = 0; i < accumulators.length; i++ ) {
+            accumulators[i] = new ResultAccumulator();
+        }
+        //reuse the generator and the votes, so that the iterations allocate nothing
+        AnswerGenerator reusable = (pool == null ? new AnswerGenerator( O ) : null);
+        VoteCounter votes = new VoteCounter( O );
+        for( int iteration = 0; iteration < iterations; iteration++ ) {
+            //require at least 1% difference between the winning option and the next
+            //(so as to create a winning option and avoid equalities).
+            AnswerGenerator generator = (pool != null
+                    ? pool.draw()
+                    : reusable.regenerate( 1, 100 ));
+            int top = generator.getTopOptionIndex();
+
+            //draw the votes one by one, scoring every N on the way
+            votes.reset();
+            for( int N = 1; N <= maxN; N++ ) {
+                generator.drawInto( votes );
+                if( N >= minN ) {
+                    accumulators[N - minN].add( GenericServices.getResult( top, votes ), N );
+                }
+            }
+        }
+        return accumulators;
+    }
+}
@@ -20,11 +20,13 @@
 package tests;
 
 import minimumAnswers.main.AnswerGenerator;
-import minimumAnswers.libraries.OccurrenceSet;
-import minimumAnswers.main.OptionServices;
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.libraries.VoteCounter;
 
 
-public class FixedNumberTest implements Runnable {
+public class FixedNumberTest implements Runnable, ChunkedTest, CostEstimate {
     // Using join() to wait for threads to finish.
 
     public Thread t;
@@ -36,8 +38,28 @@ public class FixedNumberTest implements Runnable {
      * false for performance improvement, if you are running multiple tests.
      */
     private static final boolean MEASURE_DIFFICULTIES = false;
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
+    private final Precision precision;
 
     public FixedNumberTest( int iterations, int N, int O ) {
+        this( iterations, N, O, null );
+    }
+
+    /**
+     * Create a test that stops as soon as its results are as precise as required. The number of iterations
+     * used is printed as an extra column.
+     *
+     * @param iterations The most iterations to run
+     * @param N
+     * @param O
+     * @param precision How precise the results should be, null to run all the iterations
+     */
+    public FixedNumberTest( int iterations, int N, int O, Precision precision ) {
+        this.precision = precision;
         this.iterations = iterations;
         this.N = N;
         this.O = O;
@@ -46,54 +68,71 @@ public class FixedNumberTest implements Runnable {
 
     @Override
     public void run() {try{
-        //keep a note of the difficulty distributes. 
-        OccurrenceSet<Integer> difficultyDistribution;
+        //run the iterations in chunks, on all the cores, keeping what they find in the results store
+        ResultAccumulator result = ChunkedIterations.run( this, iterations,
+                ResultStore.getCell( (precision == null ? "FixedNumberTest" : "FixedNumberTest " + precision), O, N, iterations ),
+                precision );
+
+        //Publish it, the sink prints it out
+        String line = String.format( "%1d\t%4d\t%.2f\t%.2f",
+                O,
+                N,
+                GenericServices.round( result.getWinPercentage(), 2 ),
+                GenericServices.round( result.getDrawPercentage(), 2 ) );
+        if( precision != null ) {
+            line += String.format( "\t%1d", result.getIterations() );
+        }
+        ResultSink.getInstance().publish( new ResultRecord( "FixedNumberTest", O, 'N', N, result, line ) );
+        //note: iterations-wins-draws = the number of absolute wrong results
+
         if( MEASURE_DIFFICULTIES ) {
-            difficultyDistribution = new OccurrenceSet<>();
+            System.out.println( result.getDifficulties() );
         }
+    }catch(Exception e){
+        e.printStackTrace();
+    }
+    }
+
+    @Override
+    public String toString() {
+        return "FixedNumberTest O=" + O + " N=" + N;
+    }
 
-        int wins = 0; //How many times plurality voting found the right asnwer
-        int draws = 0; //How many times pluratity voting could not decide
-        
+    @Override
+    public double estimateCost() {
+        //each iteration picks a generator and draws a binomial per option
+        return (double) iterations * 2 * O;
+    }
+
+    @Override
+    public ResultAccumulator runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "FixedNumberTest", O, N, this.iterations, chunk ) );
+
+        //pick ready made generators, if possible
+        GeneratorPool pool = GeneratorPool.getInstance( O, 1, 100, SAMPLED_POOLS );
+
+        //reuse the generator and the votes, so that the iterations allocate nothing
+        AnswerGenerator reusable = (pool == null ? new AnswerGenerator( O ) : null);
+        VoteCounter votes = new VoteCounter( O );
+        ResultAccumulator accumulator = new ResultAccumulator();
         for( int iteration = 0; iteration < iterations; iteration++ ) {
             //require at least 1% difference between the winning option and the next
             //(so as to create a winning option and avoid equalities).
-            AnswerGenerator generator = new AnswerGenerator( OptionServices.generate( O, 1, 100 ) );
+            AnswerGenerator generator = (pool != null
+                    ? pool.draw()
+                    : reusable.regenerate( 1, 100 ));
             
-            OccurrenceSet<String> votes = new OccurrenceSet<>();
-            //draw N votes
-            for( int n = 0; n < N; n++ ) {
-                votes.add( generator.draw() );
-            }
+            votes.reset();
+            //draw N votes, only their counts matter
+            generator.drawCounts( N, votes );
             
             //see how we did
-            int result = GenericServices.getResult( generator.getTopOption(), votes );
-            if( result == 1 ) {
-                wins++;
-            }
-            else if( result == 0 ) {
-                draws++;
-            }
+            accumulator.add( GenericServices.getResult( generator.getTopOptionIndex(), votes ), N );
 
             if( MEASURE_DIFFICULTIES ) {
-                difficultyDistribution.add( generator.getDifference() );
+                accumulator.addDifficulty( generator.getDifference() );
             }
         }
-
-        //Print it out if you need it
-        System.out.format( "%1d\t%4d\t%.2f\t%.2f",
-                O,
-                N,
-                GenericServices.round( wins / (iterations / 100d), 2 ),
-                GenericServices.round( draws / (iterations / 100d), 2 ) );
-        System.out.println();
-        //note: iterations-wins-draws = the number of absolute wrong results
-
-        if( MEASURE_DIFFICULTIES ) {
-            System.out.println( difficultyDistribution );
-        }
-    }catch(Exception e){
-        e.printStackTrace();
-    }
+        return accumulator;
     }
-}
\ No newline at end of file
+}
@@ -22,11 +22,14 @@ package tests;
 import java.util.ArrayList;
 import java.util.List;
 import minimumAnswers.main.AnswerGenerator;
-import minimumAnswers.libraries.OccurrenceSet;
-import minimumAnswers.main.OptionServices;
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.DistributionSampler;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.libraries.VoteCounter;
 
 
-public class FixedNumberTestControlledDifficulties implements Runnable {
+public class FixedNumberTestControlledDifficulties implements Runnable, ChunkedTest, CostEstimate {
 
     public Thread t;
     private int O; //Number of Options
@@ -37,6 +40,11 @@ public class FixedNumberTestControlledDifficulties implements Runnable {
      * false for performance improvement, if you are running multiple tests.
      */
     private static final boolean MEASURE_DIFFICULTIES = false;
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
 
     /**
      * Create a test that will attempt to evenly distribute difficulty between 1 and 98. This means that the
@@ -57,25 +65,7 @@ public class FixedNumberTestControlledDifficulties implements Runnable {
     // This is the entry point for thread.
     @Override
     public void run() {
-        //keep a note of the difficulty distributes. 
-        OccurrenceSet<Integer> difficultyDistribution;
-        if( MEASURE_DIFFICULTIES ) {
-            difficultyDistribution = new OccurrenceSet<>();
-        }
-
-        //Generate a list of all the difficulties we are going to text
-        //because N=2 cannot create the odd difficulties, we need to manually adjust.
-        List<Integer> difficulties = new ArrayList<>();
-        if( N == 2 ) {
-            for( int difficulty = 2; difficulty < 99; difficulty += 2 ) {
-                difficulties.add( difficulty );
-            }
-        }
-        else {
-            for( int difficulty = 1; difficulty < 99; difficulty += 1 ) {
-                difficulties.add( difficulty );
-            }
-        }
+        List<Integer> difficulties = getDifficulties();
 
         // divide by the number of difficulties
         // because each itteration will create an instances for each difficulty
@@ -83,43 +73,93 @@ public class FixedNumberTestControlledDifficulties implements Runnable {
         // we need only 1000/50 itterations internally.
         int totalIterations = (int) Math.ceil( iterations / difficulties.size() );
 
-        int wins = 0; //How many times plurality voting found the right asnwer
-        int draws = 0; //How many times pluratity voting could not decide
+        //run the iterations in chunks, on all the cores, keeping what they find in the results store
+        ResultAccumulator result = ChunkedIterations.run( this, iterations,
+                ResultStore.getCell( "FixedNumberTestControlledDifficulties", O, N, iterations ) );
+
+        //Publish it, the sink prints it out
+        double winPercentage = result.getWins() / (totalIterations / 100d);
+        double drawPercentage = result.getDraws() / (totalIterations / 100d);
+        String line = String.format( "%1d\t%4d\t%.2f\t%.2f",
+                O,
+                N,
+                GenericServices.round( winPercentage, 2 ),
+                GenericServices.round( drawPercentage, 2 ) );
+        ResultSink.getInstance().publish( new ResultRecord( "FixedNumberTestControlledDifficulties", O, 'N', N,
+                result.getIterations(), winPercentage, drawPercentage, result.getAverageVotesUsed(), line ) );
+        //total-wins-draws = the number of wrong results
+
+        if( MEASURE_DIFFICULTIES ) {
+            System.out.println( result.getDifficulties() );
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "FixedNumberTestControlledDifficulties O=" + O + " N=" + N;
+    }
+
+    @Override
+    public double estimateCost() {
+        //each iteration tests every difficulty, picking a generator and drawing a binomial per option
+        return (double) iterations * getDifficulties().size() * 2 * O;
+    }
+
+    @Override
+    public ResultAccumulator runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "FixedNumberTestControlledDifficulties", O, N, this.iterations, chunk ) );
+
+        List<Integer> difficulties = getDifficulties();
+
+        //pick ready made generators, if possible
+        //and keep the sampler of each difficulty, for when they are not
+        GeneratorPool[] pools = new GeneratorPool[difficulties.size()];
+        DistributionSampler[] samplers = new DistributionSampler[difficulties.size()];
+        for( int i = 0; i < pools.length; i++ ) {
+            pools[i] = GeneratorPool.getInstance( O, difficulties.get( i ), difficulties.get( i ), SAMPLED_POOLS );
+            samplers[i] = DistributionSampler.getInstance( O, difficulties.get( i ), difficulties.get( i ) );
+        }
+
+        //reuse the generator and the votes, so that the iterations allocate nothing
+        AnswerGenerator reusable = new AnswerGenerator( O );
+        VoteCounter votes = new VoteCounter( O );
+        ResultAccumulator accumulator = new ResultAccumulator();
         for( int iteration = 0; iteration < iterations; iteration++ ) {
-            for( Integer difficulty : difficulties ) {
+            for( int i = 0; i < pools.length; i++ ) {
                 //require at least 1% difference between the winning option and the next
                 //(so as to create a winning option and avoid equalities).
-                AnswerGenerator generator = new AnswerGenerator( OptionServices.generate( O, difficulty, difficulty ) );
-                OccurrenceSet<String> votes = new OccurrenceSet<>(); //specific number
-                for( int n = 0; n < N; n++ ) {
-                    votes.add( generator.draw() );
-                }
-                int result = GenericServices.getResult( generator.getTopOption(), votes );
-                if( result == 1 ) {
-                    wins++;
-                }
-                else if( result == 0 ) {
-                    draws++;
-                }
+                AnswerGenerator generator = (pools[i] != null
+                        ? pools[i].draw()
+                        : reusable.regenerate( samplers[i] ));
+                votes.reset();
+                generator.drawCounts( N, votes );
+                accumulator.add( GenericServices.getResult( generator.getTopOptionIndex(), votes ), N );
 
                 if( MEASURE_DIFFICULTIES ) {
-                    difficultyDistribution.add( generator.getDifference() );
+                    accumulator.addDifficulty( generator.getDifference() );
                 }
             }
         }
+        return accumulator;
+    }
 
-        //Print it out if you need it
-        System.out.format( "%1d\t%4d\t%.2f\t%.2f",
-                O,
-                N,
-                GenericServices.round( wins / (totalIterations / 100d), 2 ),
-                GenericServices.round( draws / (totalIterations / 100d), 2 ) );
-        System.out.println();
-        //total-wins-draws = the number of wrong results
-
-        if( MEASURE_DIFFICULTIES ) {
-            System.out.println( difficultyDistribution );
+    /**
+     * @return A list of all the difficulties we are going to test
+     */
+    private List<Integer> getDifficulties() {
+        //because N=2 cannot create the odd difficulties, we need to manually adjust.
+        List<Integer> difficulties = new ArrayList<>();
+        if( N == 2 ) {
+            for( int difficulty = 2; difficulty < 99; difficulty += 2 ) {
+                difficulties.add( difficulty );
+            }
         }
-
+        else {
+            for( int difficulty = 1; difficulty < 99; difficulty += 1 ) {
+                difficulties.add( difficulty );
+            }
+        }
+        return difficulties;
     }
-}
\ No newline at end of file
+}
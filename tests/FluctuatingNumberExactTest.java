@@ -0,0 +1,67 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.main.StoppingRuleEvaluator;
+
+/**
+ * The exact counterpart of {@link FluctuatingNumberTest}: works out the average votes used and the win rate
+ * of the stopping rule with {@link StoppingRuleEvaluator}, instead of simulating them. One test covers every C
+ * from 1 to maxC, and prints a row for each in the same columns as {@link FluctuatingNumberTest}.
+ */
+public class FluctuatingNumberExactTest implements Runnable {
+
+    /**
+     * How many distributions to average when there are too many to list.
+     */
+    private static final int PRIOR_SAMPLES = 2000;
+    private final int O; //Number of Options
+    private final int maxC;
+    private final int maxVotes; //How many votes to follow the rule for
+
+    public FluctuatingNumberExactTest( int maxC, int O, int maxVotes ) {
+        this.maxC = maxC;
+        this.O = O;
+        this.maxVotes = maxVotes;
+    }
+
+    @Override
+    public void run() {
+        //require at least 1% difference between the winning option and the next, as the simulation does
+        StoppingRuleEvaluator evaluator = new StoppingRuleEvaluator( maxVotes );
+        StoppingRuleEvaluator.Result[] results = evaluator.evaluatePriorAll( O, 1, 100, maxC, PRIOR_SAMPLES );
+
+        //Publish them, the sink prints them out
+        for( int C = 1; C <= maxC; C++ ) {
+            StoppingRuleEvaluator.Result result = results[C - 1];
+            String line = String.format( "%1d\t%1d\t%.2f\t%.2f",
+                    O,
+                    C,
+                    GenericServices.round( result.getExpectedVotes(), 2 ),
+                    GenericServices.round( result.getAccuracy() * 100, 2 ) );
+            //the rows are only exact if the rule (almost) always stopped within maxVotes
+            if( result.getUnresolved() > 1e-6 ) {
+                line += String.format( "\tunresolved %.2e", result.getUnresolved() );
+            }
+            ResultSink.getInstance().publish( new ResultRecord( "FluctuatingNumberExactTest", O, 'C', C, 0,
+                    result.getAccuracy() * 100, Double.NaN, result.getExpectedVotes(), line ) );
+        }
+    }
+}
@@ -0,0 +1,131 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.libraries.VoteCounter;
+import minimumAnswers.main.AnswerGenerator;
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+
+/**
+ * Does what a {@link FluctuatingNumberTest} does for every C from minC to maxC, in a single pass. Each iteration
+ * draws votes until the leader is maxC votes ahead. The margin grows by at most one vote at a time, so on the
+ * way it reaches every smaller C, and the votes drawn by then are the votes of the test with that C. All the C
+ * share the same generators and votes (common random numbers).
+ */
+public class FluctuatingNumberSweepTest implements Runnable, ChunkedSweepTest, CostEstimate {
+
+    public Thread t;
+    private final int O; //Number of Options
+    private final int minC; //Smallest margin to stop at
+    private final int maxC; //Largest margin to stop at
+    private final int iterations; //How many times to repeat the test
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
+    /**
+     * How many iterations to run to estimate the average number of votes, before scheduling the test.
+     */
+    private static final int PILOT_ITERATIONS = 200;
+
+    public FluctuatingNumberSweepTest( int iterations, int minC, int maxC, int O ) {
+        this.iterations = iterations;
+        this.minC = minC;
+        this.maxC = maxC;
+        this.O = O;
+        t = new Thread( this );
+    }
+
+    @Override
+    public void run() {
+        //run the iterations in chunks, on all the cores, keeping what they find in the results store
+        ResultStore.Cell[] cells = null;
+        if( ResultStore.getInstance() != null ) {
+            cells = new ResultStore.Cell[maxC - minC + 1];
+            for( int C = minC; C <= maxC; C++ ) {
+                cells[C - minC] = ResultStore.getCell( "FluctuatingNumberSweepTest " + minC + "-" + maxC, O, C, iterations );
+            }
+        }
+        ResultAccumulator[] results = ChunkedSweep.run( this, iterations, cells );
+
+        //Publish them as separate FluctuatingNumberTests would, the sink prints them out
+        for( int C = minC; C <= maxC; C++ ) {
+            ResultAccumulator result = results[C - minC];
+            String line = String.format( "%1d\t%1d\t%.2f\t%.2f",
+                    O,
+                    C,
+                    GenericServices.round( result.getAverageVotesUsed(), 2 ),
+                    GenericServices.round( result.getWinPercentage(), 2 ) );
+            ResultSink.getInstance().publish( new ResultRecord( "FluctuatingNumberSweepTest", O, 'C', C, result, line ) );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FluctuatingNumberSweepTest O=" + O + " C=" + minC + "-" + maxC;
+    }
+
+    @Override
+    public double estimateCost() {
+        //the votes needed to reach the largest margin are not known in advance, so run a few iterations to
+        //find out. The pilot uses its own stream (chunk -1), so it does not affect the results.
+        ResultAccumulator[] pilot = runChunk( -1, Math.min( PILOT_ITERATIONS, iterations ) );
+        return (double) iterations * (O + pilot[pilot.length - 1].getAverageVotesUsed());
+    }
+
+    @Override
+    public ResultAccumulator[] runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "FluctuatingNumberSweepTest", O, minC, maxC, this.iterations, chunk ) );
+
+        //pick ready made generators, if possible
+        GeneratorPool pool = GeneratorPool.getInstance( O, 1, 100, SAMPLED_POOLS );
+
+        ResultAccumulator[] accumulators = new ResultAccumulator[maxC - minC + 1];
+        for( int i = 0; i < accumulators.length; i++ ) {
+            accumulators[i] = new ResultAccumulator();
+        }
+        //reuse the generator and the votes, so that the iterations allocate nothing
+        AnswerGenerator reusable = (pool == null ? new AnswerGenerator( O ) : null);
+        VoteCounter votes = new VoteCounter( O );
+        for( int iteration = 0; iteration < iterations; iteration++ ) {
+            //require at least 1% difference between the winning option and the next
+            //(so as to create a winning option and avoid equalities).
+            AnswerGenerator generator = (pool != null
+                    ? pool.draw()
+                    : reusable.regenerate( 1, 100 ));
+            int top = generator.getTopOptionIndex();
+
+            //draw votes until the largest margin is met, scoring every C as its margin is first met
+            votes.reset();
+            int C = minC;
+            while( C <= maxC ) {
+                generator.drawInto( votes );
+                while( C <= maxC && votes.getMargin() >= C ) {
+                    accumulators[C - minC].add( GenericServices.getResult( top, votes ), votes.getTotal() );
+                    C++;
+                }
+            }
+        }
+        return accumulators;
+    }
+}
@@ -20,11 +20,13 @@
 package tests;
 
 import minimumAnswers.main.AnswerGenerator;
-import minimumAnswers.libraries.OccurrenceSet;
-import minimumAnswers.main.OptionServices;
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.libraries.VoteCounter;
 
 
-public class FluctuatingNumberTest implements Runnable {
+public class FluctuatingNumberTest implements Runnable, ChunkedTest, CostEstimate {
 
     public Thread t;
     private final int O; //Number of Options
@@ -34,9 +36,33 @@ public class FluctuatingNumberTest implements Runnable {
      * false for performance improvement, if you are running multiple tests.
      */
     private static final boolean MEASURE_DIFFICULTIES = false;
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
+    private final Precision precision;
     private final int C;
+    /**
+     * How many iterations to run to estimate the average number of votes, before scheduling the test.
+     */
+    private static final int PILOT_ITERATIONS = 200;
 
     public FluctuatingNumberTest( int iterations, int C, int O ) {
+        this( iterations, C, O, null );
+    }
+
+    /**
+     * Create a test that stops as soon as its results are as precise as required. The number of iterations
+     * used is printed as an extra column.
+     *
+     * @param iterations The most iterations to run
+     * @param C
+     * @param O
+     * @param precision How precise the results should be, null to run all the iterations
+     */
+    public FluctuatingNumberTest( int iterations, int C, int O, Precision precision ) {
+        this.precision = precision;
         this.iterations = iterations;
         this.O = O;
         this.C = C;
@@ -45,52 +71,74 @@ public class FluctuatingNumberTest implements Runnable {
 
     @Override
     public void run() {
-        //keep a note of the difficulty distributes. 
-        OccurrenceSet<Integer> difficultyDistribution;
+        //run the iterations in chunks, on all the cores, keeping what they find in the results store
+        ResultAccumulator result = ChunkedIterations.run( this, iterations,
+                ResultStore.getCell( (precision == null ? "FluctuatingNumberTest" : "FluctuatingNumberTest " + precision), O, C, iterations ),
+                precision );
+
+        //Publish it, the sink prints it out
+        String line = String.format( "%1d\t%1d\t%.2f\t%.2f",
+                O,
+                C,
+                GenericServices.round( result.getAverageVotesUsed(), 2 ),
+                GenericServices.round( result.getWinPercentage(), 2 ) );
+        if( precision != null ) {
+            line += String.format( "\t%1d", result.getIterations() );
+        }
+        ResultSink.getInstance().publish( new ResultRecord( "FluctuatingNumberTest", O, 'C', C, result, line ) );
+
         if( MEASURE_DIFFICULTIES ) {
-            difficultyDistribution = new OccurrenceSet<>();
+            System.out.println( result.getDifficulties() );
         }
 
-        double averageVotesUsed = 0;
-        int wins = 0; //How many times plurality voting found the right asnwer
-        
+    }
+
+    @Override
+    public String toString() {
+        return "FluctuatingNumberTest O=" + O + " C=" + C;
+    }
+
+    @Override
+    public double estimateCost() {
+        //the votes needed to reach the margin are not known in advance, so run a few iterations to find out.
+        //The pilot uses its own stream (chunk -1), so it does not affect the results.
+        ResultAccumulator pilot = runChunk( -1, Math.min( PILOT_ITERATIONS, iterations ) );
+        return (double) iterations * (O + pilot.getAverageVotesUsed());
+    }
+
+    @Override
+    public ResultAccumulator runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "FluctuatingNumberTest", O, C, this.iterations, chunk ) );
+
+        //pick ready made generators, if possible
+        GeneratorPool pool = GeneratorPool.getInstance( O, 1, 100, SAMPLED_POOLS );
+
+        //reuse the generator and the votes, so that the iterations allocate nothing
+        AnswerGenerator reusable = (pool == null ? new AnswerGenerator( O ) : null);
+        VoteCounter votes = new VoteCounter( O );
+        ResultAccumulator accumulator = new ResultAccumulator();
         for( int iteration = 0; iteration < iterations; iteration++ ) {
-            OccurrenceSet<String> votes = new OccurrenceSet<>();
+            votes.reset();
 
             //require at least 1% difference between the winning option and the next
             //(so as to create a winning option and avoid equalities).
-            AnswerGenerator generator = new AnswerGenerator( OptionServices.generate( O, 1, 100 ) );
+            AnswerGenerator generator = (pool != null
+                    ? pool.draw()
+                    : reusable.regenerate( 1, 100 ));
 
             //while the condition is not met, draw another vote
-            while( (OccurrenceSet.topTwoDifference( votes ) < C) ) {
-                votes.add( generator.draw() );
+            while( (votes.getMargin() < C) ) {
+                generator.drawInto( votes );
             }
 
             //see how we did
-            int result = GenericServices.getResult( generator.getTopOption(), votes );
-            if( result == 1 ) {
-                wins++;
-            }
             //note: we dont expect a draw because the condition guarantees a difference
-
-            averageVotesUsed += votes.sizeWithOccurrences() / (double) iterations;
+            accumulator.add( GenericServices.getResult( generator.getTopOptionIndex(), votes ), votes.getTotal() );
 
             if( MEASURE_DIFFICULTIES ) {
-                difficultyDistribution.add( generator.getDifference() );
+                accumulator.addDifficulty( generator.getDifference() );
             }
         }
-        
-        //Printout
-        System.out.format( "%1d\t%1d\t%.2f\t%.2f",
-                O,
-                C,
-                GenericServices.round( averageVotesUsed, 2 ),
-                GenericServices.round( wins / (iterations / 100d), 2 ) );
-        System.out.println();
-
-        if( MEASURE_DIFFICULTIES ) {
-            System.out.println( difficultyDistribution );
-        }
-
+        return accumulator;
     }
 }
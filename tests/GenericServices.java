@@ -21,6 +21,8 @@ package tests;
 
 import minimumAnswers.main.AnswerGenerator;
 import minimumAnswers.libraries.OccurrenceSet;
+import minimumAnswers.libraries.SparseVoteCounter;
+import minimumAnswers.libraries.VoteCounter;
 
 
 public class GenericServices {
@@ -33,19 +35,135 @@ public class GenericServices {
      * @return -1 - Wrong<br> 0 - Cannot decide<br> 1 - Correct
      */
     public static int getResult( String correctResult, OccurrenceSet<String> votes ) {
+        //find the leader and the votes of the runner up in a single scan, without ordering the set
+        String leader = null;
+        int leaderVotes = Integer.MIN_VALUE;
+        int runnerUpVotes = Integer.MIN_VALUE;
+        for( int i = 0; i < votes.size(); i++ ) {
+            int count = votes.getOccurrences( i );
+            if( count > leaderVotes ) {
+                runnerUpVotes = leaderVotes;
+                leaderVotes = count;
+                leader = votes.get( i );
+            }
+            else if( count > runnerUpVotes ) {
+                runnerUpVotes = count;
+            }
+        }
+        if( leader == null ) {
+            return -1;
+        }
         //if the first two elements have the same number of votes, we cannot decide
-        OccurrenceSet<String> top = votes.getTop( 2 );
-        if( top.size() == 2 && top.getOccurrences( 0 ).equals( top.getOccurrences( 1 ) ) ) {
+        else if( leaderVotes == runnerUpVotes ) {
             return 0;
         }
         //See how many times we found the correct result
-        else if( correctResult.equals( votes.getTop() ) ) {
+        else if( correctResult.equals( leader ) ) {
             return 1;
         }
 
         return -1;
     }
 
+    /**
+     * See if majority voting has found the correct result, when the votes are counts indexed by option (as
+     * drawn by {@link AnswerGenerator#drawCounts(int)}). A single scan of the counts.
+     *
+     * @param correctResult The index that identifies the correct result in the counts
+     * @param counts The votes of each option
+     * @return -1 - Wrong<br> 0 - Cannot decide<br> 1 - Correct
+     */
+    public static int getResult( int correctResult, int[] counts ) {
+        int leader = -1;
+        int leaderVotes = 0;
+        int runnerUpVotes = 0;
+        for( int option = 0; option < counts.length; option++ ) {
+            int count = counts[option];
+            if( count > leaderVotes ) {
+                runnerUpVotes = leaderVotes;
+                leaderVotes = count;
+                leader = option;
+            }
+            else if( count > runnerUpVotes ) {
+                runnerUpVotes = count;
+            }
+        }
+        //no votes at all are wrong, as with a VoteCounter
+        if( leader < 0 ) {
+            return -1;
+        }
+        //if the first two options have the same number of votes, we cannot decide
+        else if( leaderVotes == runnerUpVotes ) {
+            return 0;
+        }
+        else if( leader == correctResult ) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * See if majority voting has found the correct result, when the votes are counted by option index.
+     *
+     * @param correctResult The index that identifies the correct result in the votes
+     * @param votes A counter with the votes we have gathered.
+     * @return -1 - Wrong<br> 0 - Cannot decide<br> 1 - Correct
+     */
+    public static int getResult( int correctResult, VoteCounter votes ) {
+        if( votes.getTotal() == 0 ) {
+            return -1;
+        }
+        //if the first two options have the same number of votes, we cannot decide
+        else if( votes.isTied() ) {
+            return 0;
+        }
+        else if( votes.getLeader() == correctResult ) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * See if majority voting has found the correct result, when the votes are counted sparsely by option index.
+     *
+     * @param correctResult The index that identifies the correct result in the votes
+     * @param votes A counter with the votes we have gathered.
+     * @return -1 - Wrong<br> 0 - Cannot decide<br> 1 - Correct
+     */
+    public static int getResult( int correctResult, SparseVoteCounter votes ) {
+        if( votes.getTotal() == 0 ) {
+            return -1;
+        }
+        //if the first two options have the same number of votes, we cannot decide
+        else if( votes.isTied() ) {
+            return 0;
+        }
+        else if( votes.getLeader() == correctResult ) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Creates the id of the random stream a test should roll on (see
+     * {@link minimumAnswers.main.LoggedRandom#bindStream(long)}), so that a test with the same parameters rolls
+     * the same numbers in every run with the same seed.
+     *
+     * @param testName The name of the test
+     * @param parameters The parameters that identify this instance of the test
+     * @return
+     */
+    public static long getStreamId( String testName, int... parameters ) {
+        long id = testName.hashCode();
+        for( int parameter : parameters ) {
+            id = id * 1000003 + parameter;
+        }
+        return id & Long.MAX_VALUE;
+    }
+
     /**
      * Round at the given number of decimals
      *
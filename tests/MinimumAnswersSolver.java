@@ -0,0 +1,316 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import minimumAnswers.libraries.VoteCounter;
+import minimumAnswers.main.AnswerGenerator;
+import minimumAnswers.main.GeneratorPool;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.main.OptionServices;
+
+/**
+ * Finds the minimum number of answers: the smallest N (fixed number tests) or C (fluctuating number tests)
+ * whose accuracy meets a target, for O options and difficulties drawn as by
+ * {@link OptionServices#generate(int, int, int)}.
+ * <p>
+ * Rather than sweeping every value, the solver brackets the answer by doubling and then bisects the bracket.
+ * Each value it visits is simulated in growing rounds until the confidence interval of its accuracy is all
+ * above or all below the target, so most of the simulation is spent on the values near the answer. A value
+ * still undecided after {@link #MAX_POINT_ITERATIONS} iterations is judged by its estimate, and the solution
+ * is then marked as undecided.
+ * <p>
+ * The search assumes the accuracy grows with N (or C). For fixed numbers this only holds among odd N and among
+ * even N (an even N can end in a draw), so the two are searched separately and the smaller answer is taken.
+ *
+ * @author Andreas Lianos
+ */
+public class MinimumAnswersSolver implements Runnable {
+
+    public Thread t;
+    /**
+     * The largest N searched.
+     */
+    public static final int MAX_N = 10000;
+    /**
+     * The largest C searched.
+     */
+    public static final int MAX_C = 1000;
+    /**
+     * The most iterations simulated for a single value of N (or C).
+     */
+    public static final int MAX_POINT_ITERATIONS = 2000000;
+    /**
+     * If set to true, generators are picked from a sampled {@link GeneratorPool} whenever an exact pool is not
+     * possible. This is faster, but the results then also carry the error of the sample the pool holds.
+     */
+    private static final boolean SAMPLED_POOLS = false;
+    private final boolean fixed;
+    private final int O; //Number of Options
+    private final int minDifficulty;
+    private final int maxDifficulty;
+    private final double target;
+    private final double confidence;
+    private final double z;
+    private final Map<Integer, ResultAccumulator> evaluated = new HashMap<>();
+    private final Map<Integer, Boolean> decisions = new HashMap<>();
+    private final Set<Integer> undecided = new HashSet<>();
+    private long iterationsUsed = 0;
+
+    /**
+     * @param fixed True to search N for fixed number tests, false to search C for fluctuating number tests
+     * @param O The number of options
+     * @param minDifficulty The smallest difficulty of the generated distributions
+     * @param maxDifficulty The largest difficulty of the generated distributions
+     * @param target The accuracy to meet, as a percentage of wins
+     * @param confidence How confident the solver should be that a value meets (or misses) the target, e.g.
+     * 0.95
+     */
+    public MinimumAnswersSolver( boolean fixed, int O, int minDifficulty, int maxDifficulty, double target, double confidence ) {
+        this.fixed = fixed;
+        this.O = O;
+        this.minDifficulty = minDifficulty;
+        this.maxDifficulty = maxDifficulty;
+        this.target = target;
+        this.confidence = confidence;
+        this.z = Precision.getZ( confidence );
+        t = new Thread( this );
+    }
+
+    @Override
+    public void run() {
+        Solution solution = solve();
+
+        //Publish it, the sink prints it out
+        char parameter = (fixed ? 'N' : 'C');
+        if( solution.isFound() ) {
+            String line = String.format( "%1d\t%s=%d%s\t%.2f\t%.2f\t%.2f\t%d",
+                    O,
+                    (fixed ? "N" : "C"),
+                    solution.getValue(),
+                    (solution.isDecided() ? "" : "?"),
+                    GenericServices.round( solution.getResult().getAverageVotesUsed(), 2 ),
+                    GenericServices.round( solution.getResult().getWinPercentage(), 2 ),
+                    GenericServices.round( Precision.getWinHalfWidth( solution.getResult(), z ), 2 ),
+                    solution.getIterationsUsed() );
+            ResultSink.getInstance().publish( new ResultRecord( "MinimumAnswersSolver", O, parameter, solution.getValue(),
+                    solution.getResult(), line ) );
+        }
+        else {
+            String line = String.format( "%1d\t%s>%d\t%d",
+                    O,
+                    (fixed ? "N" : "C"),
+                    (fixed ? MAX_N : MAX_C),
+                    solution.getIterationsUsed() );
+            ResultSink.getInstance().publish( new ResultRecord( "MinimumAnswersSolver", O, parameter, -1,
+                    solution.getIterationsUsed(), Double.NaN, Double.NaN, Double.NaN, line ) );
+        }
+    }
+
+    /**
+     * @return The minimum N (or C) that meets the target accuracy.
+     */
+    public synchronized Solution solve() {
+        if( !fixed ) {
+            return search( 1, 1, MAX_C );
+        }
+        Solution odd = search( 1, 2, MAX_N );
+        Solution even = search( 2, 2, MAX_N );
+        if( !even.isFound() || (odd.isFound() && odd.getValue() < even.getValue()) ) {
+            return odd;
+        }
+        return even;
+    }
+
+    /**
+     * Searches the values start, start+step, start+2*step... up to max.
+     */
+    private Solution search( int start, int step, int max ) {
+        int last = (max - start) / step;
+
+        //bracket: double until the target is met
+        int failing = -1;
+        int meeting = 0;
+        while( !meets( start + meeting * step ) ) {
+            if( meeting == last ) {
+                return new Solution( -1, null, false );
+            }
+            failing = meeting;
+            meeting = Math.min( 2 * meeting + 1, last );
+        }
+
+        //bisect: the answer is above the failing value, and at most the meeting one
+        while( meeting - failing > 1 ) {
+            int middle = (failing + meeting) >>> 1;
+            if( meets( start + middle * step ) ) {
+                meeting = middle;
+            }
+            else {
+                failing = middle;
+            }
+        }
+        int value = start + meeting * step;
+        boolean decided = !undecided.contains( value ) && (failing < 0 || !undecided.contains( start + failing * step ));
+        return new Solution( value, evaluated.get( value ), decided );
+    }
+
+    /**
+     * Simulates the value until its confidence interval is all above or all below the target.
+     *
+     * @param value N or C
+     * @return True if the value meets the target accuracy
+     */
+    private boolean meets( int value ) {
+        Boolean decision = decisions.get( value );
+        if( decision != null ) {
+            return decision;
+        }
+        ResultAccumulator result = new ResultAccumulator();
+        int round = 0;
+        while( true ) {
+            if( result.getIterations() > 0 ) {
+                double accuracy = result.getWinPercentage();
+                double halfWidth = Precision.getWinHalfWidth( result, z );
+                if( accuracy - halfWidth > target || accuracy + halfWidth < target
+                        || result.getIterations() >= MAX_POINT_ITERATIONS ) {
+                    if( Math.abs( accuracy - target ) <= halfWidth ) {
+                        undecided.add( value );
+                    }
+                    evaluated.put( value, result );
+                    decisions.put( value, accuracy >= target );
+                    return accuracy >= target;
+                }
+            }
+            //double the iterations every round
+            int iterations = (int) Math.min( MAX_POINT_ITERATIONS - result.getIterations(),
+                    Math.max( ChunkedIterations.CHUNK_SIZE, result.getIterations() ) );
+            result.merge( ChunkedIterations.run( new Trial( value, round++ ), iterations ) );
+            iterationsUsed += iterations;
+        }
+    }
+
+    /**
+     * A round of iterations of a single value, on its own random streams.
+     */
+    private final class Trial implements ChunkedTest {
+
+        private final int value;
+        private final int round;
+
+        private Trial( int value, int round ) {
+            this.value = value;
+            this.round = round;
+        }
+
+        @Override
+        public ResultAccumulator runChunk( int chunk, int iterations ) {
+            LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( "MinimumAnswersSolver",
+                    (fixed ? 1 : 0), O, minDifficulty, maxDifficulty, value, round, chunk ) );
+
+            //pick ready made generators, if possible
+            GeneratorPool pool = GeneratorPool.getInstance( O, minDifficulty, maxDifficulty, SAMPLED_POOLS );
+
+            ResultAccumulator accumulator = new ResultAccumulator();
+            //reuse the generator and the votes, so that the iterations allocate nothing
+            AnswerGenerator reusable = (pool == null ? new AnswerGenerator( O ) : null);
+            VoteCounter votes = new VoteCounter( O );
+            for( int iteration = 0; iteration < iterations; iteration++ ) {
+                AnswerGenerator generator = (pool != null
+                        ? pool.draw()
+                        : reusable.regenerate( minDifficulty, maxDifficulty ));
+                votes.reset();
+                if( fixed ) {
+                    //draw N votes, only their counts matter
+                    generator.drawCounts( value, votes );
+                }
+                else {
+                    //draw votes until the leader is C votes ahead
+                    while( votes.getMargin() < value ) {
+                        generator.drawInto( votes );
+                    }
+                }
+                accumulator.add( GenericServices.getResult( generator.getTopOptionIndex(), votes ), votes.getTotal() );
+            }
+            return accumulator;
+        }
+    }
+
+    /**
+     * The minimum N (or C) found by the solver.
+     */
+    public final class Solution {
+
+        private final int value;
+        private final ResultAccumulator result;
+        private final boolean decided;
+
+        private Solution( int value, ResultAccumulator result, boolean decided ) {
+            this.value = value;
+            this.result = result;
+            this.decided = decided;
+        }
+
+        /**
+         * @return False if even the largest value searched does not meet the target.
+         */
+        public boolean isFound() {
+            return value > 0;
+        }
+
+        /**
+         * @return The minimum N (or C), -1 if not found
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * @return What the simulations of the value found, null if not found
+         */
+        public ResultAccumulator getResult() {
+            return result;
+        }
+
+        /**
+         * @return True if both the value and the one below it were told apart from the target with the
+         * required confidence. If not, the answer may be a step off.
+         */
+        public boolean isDecided() {
+            return decided;
+        }
+
+        /**
+         * @return How many iterations the whole search simulated
+         */
+        public long getIterationsUsed() {
+            return iterationsUsed;
+        }
+
+        /**
+         * @return The confidence the solution was found with
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+/**
+ * How precisely a test should find its results. A test run with a precision keeps running iterations until
+ * the 95% confidence intervals of its results are narrow enough (see
+ * {@link ChunkedIterations#run(ChunkedTest, int, ResultStore.Cell, Precision)}).
+ *
+ * @author Andreas Lianos
+ */
+public final class Precision {
+
+    /**
+     * The normal quantile of the 95% confidence intervals.
+     */
+    public static final double Z = 1.96;
+    private final double winEpsilon;
+    private final double votesEpsilon;
+
+    /**
+     * @param winEpsilon The largest half width of the confidence interval of the win percentage, in
+     * percentage points (as the tests print it)
+     */
+    public Precision( double winEpsilon ) {
+        this( winEpsilon, Double.POSITIVE_INFINITY );
+    }
+
+    /**
+     * @param winEpsilon The largest half width of the confidence interval of the win percentage, in
+     * percentage points (as the tests print it)
+     * @param votesEpsilon The largest half width of the confidence interval of the average votes used
+     */
+    public Precision( double winEpsilon, double votesEpsilon ) {
+        this.winEpsilon = winEpsilon;
+        this.votesEpsilon = votesEpsilon;
+    }
+
+    /**
+     * The half width of the confidence interval of the win percentage, in percentage points. The percentage is
+     * adjusted as by Agresti and Coull (two more wins and two more losses), so that a test does not look
+     * certain because it has won (or lost) every iteration so far.
+     *
+     * @param result
+     * @return
+     */
+    public static double getWinHalfWidth( ResultAccumulator result ) {
+        return getWinHalfWidth( result, Z );
+    }
+
+    /**
+     * As {@link #getWinHalfWidth(ResultAccumulator)}, for another normal quantile.
+     *
+     * @param result
+     * @param z The normal quantile of the confidence level (see {@link #getZ(double)})
+     * @return
+     */
+    public static double getWinHalfWidth( ResultAccumulator result, double z ) {
+        double n = result.getIterations() + 4;
+        double p = (result.getWins() + 2) / n;
+        return 100 * z * Math.sqrt( p * (1 - p) / n );
+    }
+
+    /**
+     * The quantile of the standard normal distribution, by the rational approximation of Acklam (relative
+     * error below 1.2e-9). E.g. 0.975 gives the 1.96 of two sided 95% intervals, 0.95 the 1.645 of one sided
+     * ones.
+     *
+     * @param probability Between 0 and 1 (exclusive)
+     * @return
+     */
+    public static double getZ( double probability ) {
+        if( !(probability > 0 && probability < 1) ) {
+            throw new IllegalArgumentException( "The probability must be between 0 and 1: " + probability );
+        }
+        if( probability < 0.02425 ) {
+            double q = Math.sqrt( -2 * Math.log( probability ) );
+            return (((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q - 2.400758277161838e+00) * q
+                    - 2.549732539343734e+00) * q + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+                    / ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q + 2.445134137142996e+00) * q
+                    + 3.754408661907416e+00) * q + 1);
+        }
+        if( probability > 1 - 0.02425 ) {
+            return -getZ( 1 - probability );
+        }
+        double q = probability - 0.5;
+        double r = q * q;
+        return (((((-3.969683028665376e+01 * r + 2.209460984245205e+02) * r - 2.759285104469687e+02) * r
+                + 1.383577518672690e+02) * r - 3.066479806614716e+01) * r + 2.506628277459239e+00) * q
+                / (((((-5.447609879822406e+01 * r + 1.615858368580409e+02) * r - 1.556989798598866e+02) * r
+                + 6.680131188771972e+01) * r - 1.328068155288572e+01) * r + 1);
+    }
+
+    /**
+     * @param result
+     * @return The half width of the confidence interval of the average votes used.
+     */
+    public static double getVotesHalfWidth( ResultAccumulator result ) {
+        double n = result.getIterations();
+        if( n < 2 ) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = result.getVotesUsed() / n;
+        double variance = Math.max( 0, (result.getVotesUsedSquares() - n * mean * mean) / (n - 1) );
+        return Z * Math.sqrt( variance / n );
+    }
+
+    /**
+     * @param result
+     * @return True if the result is as precise as required.
+     */
+    public boolean isMet( ResultAccumulator result ) {
+        return getWinHalfWidth( result ) <= winEpsilon && getVotesHalfWidth( result ) <= votesEpsilon;
+    }
+
+    /**
+     * Estimates how many iterations in total are needed for the precision, from the variances found so far.
+     *
+     * @param result
+     * @return
+     */
+    public long getIterationsNeeded( ResultAccumulator result ) {
+        //half widths shrink with the square root of the iterations
+        double ratio = getWinHalfWidth( result ) / winEpsilon;
+        if( !Double.isInfinite( votesEpsilon ) ) {
+            ratio = Math.max( ratio, getVotesHalfWidth( result ) / votesEpsilon );
+        }
+        return (long) Math.ceil( result.getIterations() * ratio * ratio );
+    }
+
+    @Override
+    public String toString() {
+        return "+-" + winEpsilon + "%" + (Double.isInfinite( votesEpsilon ) ? "" : ", +-" + votesEpsilon + " votes");
+    }
+}
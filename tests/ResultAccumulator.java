@@ -0,0 +1,158 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.libraries.OccurrenceSet;
+
+/**
+ * What a number of iterations of a test found. Accumulators of separate chunks of iterations can be merged,
+ * and the merged accumulator is the same as if all the iterations had run in a single loop.
+ */
+public final class ResultAccumulator {
+
+    private long iterations;
+    private long wins; //How many times plurality voting found the right asnwer
+    private long draws; //How many times pluratity voting could not decide
+    private long votesUsed;
+    private double votesUsedSquares;
+    private OccurrenceSet<Integer> difficulties;
+
+    /**
+     * Recreates an accumulator from its totals (e.g. as kept by the {@link ResultStore}). The difficulties are
+     * not restored.
+     *
+     * @param iterations
+     * @param wins
+     * @param draws
+     * @param votesUsed
+     * @param votesUsedSquares
+     * @return
+     */
+    public static ResultAccumulator restore( long iterations, long wins, long draws, long votesUsed, double votesUsedSquares ) {
+        ResultAccumulator accumulator = new ResultAccumulator();
+        accumulator.iterations = iterations;
+        accumulator.wins = wins;
+        accumulator.draws = draws;
+        accumulator.votesUsed = votesUsed;
+        accumulator.votesUsedSquares = votesUsedSquares;
+        return accumulator;
+    }
+
+    /**
+     * Adds the outcome of one iteration.
+     *
+     * @param result As given by {@link GenericServices#getResult(int, minimumAnswers.libraries.VoteCounter)}
+     * @param votes How many votes the iteration used
+     */
+    public void add( int result, int votes ) {
+        iterations++;
+        if( result == 1 ) {
+            wins++;
+        }
+        else if( result == 0 ) {
+            draws++;
+        }
+        votesUsed += votes;
+        votesUsedSquares += (double) votes * votes;
+    }
+
+    /**
+     * Keeps a note of the difficulty of an iteration (for verification purposes).
+     *
+     * @param difficulty
+     */
+    public void addDifficulty( int difficulty ) {
+        if( difficulties == null ) {
+            difficulties = new OccurrenceSet<>();
+        }
+        difficulties.add( difficulty );
+    }
+
+    /**
+     * Adds everything the other accumulator found to this one.
+     *
+     * @param that
+     * @return this accumulator
+     */
+    public ResultAccumulator merge( ResultAccumulator that ) {
+        iterations += that.iterations;
+        wins += that.wins;
+        draws += that.draws;
+        votesUsed += that.votesUsed;
+        votesUsedSquares += that.votesUsedSquares;
+        if( that.difficulties != null ) {
+            for( Integer difficulty : that.difficulties ) {
+                if( difficulties == null ) {
+                    difficulties = new OccurrenceSet<>();
+                }
+                difficulties.add( difficulty, that.difficulties.getOccurrences( difficulty ) );
+            }
+        }
+        return this;
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    public long getVotesUsed() {
+        return votesUsed;
+    }
+
+    public double getVotesUsedSquares() {
+        return votesUsedSquares;
+    }
+
+    /**
+     * @return The percentage of the iterations that were won.
+     */
+    public double getWinPercentage() {
+        return wins / (iterations / 100d);
+    }
+
+    /**
+     * @return The percentage of the iterations that were draws.
+     */
+    public double getDrawPercentage() {
+        return draws / (iterations / 100d);
+    }
+
+    /**
+     * @return The average votes used per iteration.
+     */
+    public double getAverageVotesUsed() {
+        return votesUsed / (double) iterations;
+    }
+
+    /**
+     * @return The difficulties noted with {@link #addDifficulty(int)}, null if none were.
+     */
+    public OccurrenceSet<Integer> getDifficulties() {
+        return difficulties;
+    }
+}
@@ -0,0 +1,136 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+/**
+ * What a test found for one value of its parameter (N or C), as published to the {@link ResultSink}.
+ *
+ * @author Andreas Lianos
+ */
+public final class ResultRecord {
+
+    /**
+     * The columns of {@link #toCsv()}.
+     */
+    public static final String CSV_HEADER = "test,O,parameter,value,iterations,win,draw,averageVotes";
+    private final String test;
+    private final int O;
+    private final char parameter;
+    private final int value;
+    private final long iterations;
+    private final double winPercentage;
+    private final double drawPercentage;
+    private final double averageVotes;
+    private final String line;
+
+    /**
+     * @param test The name of the test
+     * @param O The number of options
+     * @param parameter 'N' for a fixed number of answers, 'C' for a margin, 'I' for the index of an option
+     * @param value The value of the parameter
+     * @param iterations How many iterations were simulated, 0 if the results are exact
+     * @param winPercentage For 'I', the percentage of the answers that went to the option
+     * @param drawPercentage NaN if not known
+     * @param averageVotes NaN if not known
+     * @param line The row to print for the record
+     */
+    public ResultRecord( String test, int O, char parameter, int value, long iterations, double winPercentage,
+            double drawPercentage, double averageVotes, String line ) {
+        this.test = test;
+        this.O = O;
+        this.parameter = parameter;
+        this.value = value;
+        this.iterations = iterations;
+        this.winPercentage = winPercentage;
+        this.drawPercentage = drawPercentage;
+        this.averageVotes = averageVotes;
+        this.line = line;
+    }
+
+    /**
+     * A record of simulated results.
+     *
+     * @param test The name of the test
+     * @param O The number of options
+     * @param parameter 'N' for a fixed number of answers, 'C' for a margin, 'I' for the index of an option
+     * @param value The value of the parameter
+     * @param result What the iterations found
+     * @param line The row to print for the record
+     */
+    public ResultRecord( String test, int O, char parameter, int value, ResultAccumulator result, String line ) {
+        this( test, O, parameter, value, result.getIterations(), result.getWinPercentage(), result.getDrawPercentage(),
+                result.getAverageVotesUsed(), line );
+    }
+
+    public String getTest() {
+        return test;
+    }
+
+    public int getO() {
+        return O;
+    }
+
+    public char getParameter() {
+        return parameter;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    public double getWinPercentage() {
+        return winPercentage;
+    }
+
+    public double getDrawPercentage() {
+        return drawPercentage;
+    }
+
+    public double getAverageVotes() {
+        return averageVotes;
+    }
+
+    /**
+     * @return The row to print, in the columns the test has always printed.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @return The record as a line of CSV (without the line break), in the columns of {@link #CSV_HEADER}.
+     * Unknown values are left empty.
+     */
+    public String toCsv() {
+        return test + "," + O + "," + parameter + "," + value + "," + iterations + ","
+                + (Double.isNaN( winPercentage ) ? "" : winPercentage) + ","
+                + (Double.isNaN( drawPercentage ) ? "" : drawPercentage) + ","
+                + (Double.isNaN( averageVotes ) ? "" : averageVotes);
+    }
+
+    @Override
+    public String toString() {
+        return toCsv();
+    }
+}
@@ -0,0 +1,189 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Where the tests publish their results. The tests only queue their {@link ResultRecord}s; a single writer
+ * thread takes them in batches, prints their rows (whole, so rows of tests running at the same time do not
+ * interleave), tells the {@link ResultListener}s and appends them to a CSV file, if one is named by the system
+ * property {@value #CSV_PROPERTY}.
+ * <p>
+ * {@link #close()} must be called once all the tests are done, to wait until everything is written.
+ *
+ * @author Andreas Lianos
+ */
+public final class ResultSink {
+
+    /**
+     * The system property that names the CSV file of the results. The records are appended if the file
+     * exists.
+     */
+    public static final String CSV_PROPERTY = "minimumAnswers.csv";
+    /**
+     * Queued after the last record, to stop the writer.
+     */
+    private static final ResultRecord END = new ResultRecord( "", 0, ' ', 0, 0, 0, 0, 0, "" );
+    private static ResultSink instance;
+    private final BlockingQueue<ResultRecord> queue = new LinkedBlockingQueue<>();
+    private final List<ResultListener> listeners = new CopyOnWriteArrayList<>();
+    private final FileChannel csv;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    private ResultSink( String csvFile ) {
+        FileChannel channel = null;
+        if( csvFile != null ) {
+            try {
+                channel = FileChannel.open( Paths.get( csvFile ), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND );
+                if( channel.size() == 0 ) {
+                    write( channel, ResultRecord.CSV_HEADER + System.lineSeparator() );
+                }
+            } catch( IOException e ) {
+                //the results are still printed
+                e.printStackTrace();
+                channel = null;
+            }
+        }
+        csv = channel;
+        writer = new Thread( this::write, "ResultSink" );
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    /**
+     * @return The sink of the results, started on first use.
+     */
+    public static synchronized ResultSink getInstance() {
+        if( instance == null ) {
+            instance = new ResultSink( System.getProperty( CSV_PROPERTY ) );
+        }
+        return instance;
+    }
+
+    public void addListener( ResultListener listener ) {
+        listeners.add( listener );
+    }
+
+    public void removeListener( ResultListener listener ) {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Queues the record for writing, and returns at once.
+     *
+     * @param record
+     * @throws IllegalStateException if the sink is closed
+     */
+    public void publish( ResultRecord record ) {
+        if( closed ) {
+            throw new IllegalStateException( "The result sink is closed" );
+        }
+        queue.add( record );
+    }
+
+    /**
+     * Waits until every record published is written, then stops the writer and closes the CSV file.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        synchronized( this ) {
+            if( !closed ) {
+                closed = true;
+                queue.add( END );
+            }
+        }
+        writer.join();
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void write() {
+        List<ResultRecord> batch = new ArrayList<>();
+        boolean ended = false;
+        while( !ended ) {
+            try {
+                batch.add( queue.take() );
+            } catch( InterruptedException e ) {
+                //only close() stops the writer
+                continue;
+            }
+            queue.drainTo( batch );
+
+            StringBuilder lines = new StringBuilder();
+            StringBuilder rows = new StringBuilder();
+            for( ResultRecord record : batch ) {
+                if( record == END ) {
+                    ended = true;
+                    continue;
+                }
+                lines.append( record.getLine() ).append( System.lineSeparator() );
+                rows.append( record.toCsv() ).append( System.lineSeparator() );
+                for( ResultListener listener : listeners ) {
+                    try {
+                        listener.resultPublished( record );
+                    } catch( RuntimeException e ) {
+                        //a failing listener must not stop the writer, or nothing after it would be written
+                        e.printStackTrace();
+                    }
+                }
+            }
+            System.out.print( lines );
+            System.out.flush();
+            if( csv != null && rows.length() > 0 ) {
+                try {
+                    write( csv, rows.toString() );
+                } catch( IOException | RuntimeException e ) {
+                    //the results are still printed
+                    e.printStackTrace();
+                }
+            }
+            batch.clear();
+        }
+        if( csv != null ) {
+            try {
+                csv.close();
+            } catch( IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void write( FileChannel channel, String text ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( text.getBytes( StandardCharsets.UTF_8 ) );
+        while( buffer.hasRemaining() ) {
+            channel.write( buffer );
+        }
+    }
+}
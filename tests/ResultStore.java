@@ -0,0 +1,333 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import minimumAnswers.main.LoggedRandom;
+
+/**
+ * Keeps the results of the tests in a memory-mapped file, as they complete, so that a sweep that crashes or is
+ * killed can be restarted without losing what it had already found. Both the results of whole tests and of
+ * their chunks (see {@link ChunkedIterations}) are kept; a restarted sweep skips the tests that had finished
+ * and the chunks that had finished of the tests that had not.
+ * <p>
+ * The store is used when the system property {@value #RESULTS_PROPERTY} names its file, e.g.
+ * {@code -DminimumAnswers.results=sweep.results}. The file is created if it does not exist.
+ * <p>
+ * The results only hold for the master seed of {@link LoggedRandom} and for the code that found them, so the store
+ * belongs to a single seed and {@link #SIMULATION_VERSION}. A new store takes the seed of the sweep. When an
+ * existing store is opened without a seed being set, the sweep takes the seed of the store, so a restart carries
+ * on where it stopped. A store of another seed or simulation version is refused.
+ * <p>
+ * The file is a {@value #HEADER_SIZE} byte header followed by records of {@value #RECORD_SIZE} bytes, all big
+ * endian. The header holds the magic number {@value #MAGIC}, the version, the record size, the number of
+ * complete records (at offset {@value #COUNT_OFFSET}), the master seed (a long, at offset
+ * {@value #SEED_OFFSET}) and the simulation version (at offset {@value #SIMULATION_VERSION_OFFSET}). A record
+ * holds, in order:
+ * <ul>
+ * <li>long: the 64 bit FNV-1a hash of the name of the test (see {@link #hash(String)})</li>
+ * <li>int: the number of options</li>
+ * <li>int: the parameter of the test (N or C)</li>
+ * <li>int: the iterations the test was asked to run</li>
+ * <li>int: the chunk, or -1 for the result of the whole test</li>
+ * <li>long: iterations, long: wins, long: draws, long: votes used, double: sum of squares of the votes
+ * used</li>
+ * </ul>
+ * A record is written before the count is raised, so other programs can read the file while a sweep runs by
+ * reading the count first and then as many records.
+ *
+ * @author Andreas Lianos
+ */
+public final class ResultStore {
+
+    /**
+     * The system property that names the file of the store.
+     */
+    public static final String RESULTS_PROPERTY = "minimumAnswers.results";
+    public static final int MAGIC = 0x4D414E53;
+    public static final int VERSION = 3;
+    /**
+     * Raise this whenever a change makes the tests roll differently, or find different results, with the same
+     * seed (e.g. a change in how the rolls map to options). Stores of earlier simulation versions are refused.
+     */
+    public static final int SIMULATION_VERSION = 2;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 64;
+    public static final int COUNT_OFFSET = 12;
+    public static final int SEED_OFFSET = 16;
+    public static final int SIMULATION_VERSION_OFFSET = 24;
+    /**
+     * The result of the whole test is kept as this chunk.
+     */
+    private static final int WHOLE_TEST = -1;
+    private static final int INITIAL_CAPACITY = 1024; //records
+    private static ResultStore instance;
+    private static boolean opened = false;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int records;
+    private final Map<String, ResultAccumulator> results = new HashMap<>();
+    private boolean closed = false;
+
+    private ResultStore( File file ) throws IOException {
+        channel = new RandomAccessFile( file, "rw" ).getChannel();
+        try {
+            open( file );
+        } catch( IOException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void open( File file ) throws IOException {
+        LoggedRandom random = LoggedRandom.getInstance();
+        long size = channel.size();
+        if( size == 0 ) {
+            map( INITIAL_CAPACITY );
+            buffer.putInt( 0, MAGIC );
+            buffer.putInt( 4, VERSION );
+            buffer.putInt( 8, RECORD_SIZE );
+            buffer.putInt( COUNT_OFFSET, 0 );
+            buffer.putLong( SEED_OFFSET, random.getSeed() );
+            buffer.putInt( SIMULATION_VERSION_OFFSET, SIMULATION_VERSION );
+        }
+        else {
+            map( (int) Math.max( INITIAL_CAPACITY, (size - HEADER_SIZE) / RECORD_SIZE ) );
+            if( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 8 ) != RECORD_SIZE ) {
+                throw new IOException( file + " is not a results store" );
+            }
+            if( buffer.getInt( 4 ) != VERSION ) {
+                throw new IOException( file + " is a results store of version " + buffer.getInt( 4 ) );
+            }
+            if( buffer.getInt( SIMULATION_VERSION_OFFSET ) != SIMULATION_VERSION ) {
+                throw new IOException( file + " holds results of simulation version " + buffer.getInt( SIMULATION_VERSION_OFFSET )
+                        + ", which this code (version " + SIMULATION_VERSION + ") would not find again. Use another file" );
+            }
+            long seed = buffer.getLong( SEED_OFFSET );
+            if( System.getProperty( LoggedRandom.SEED_PROPERTY ) == null ) {
+                //carry on with the seed of the store
+                random.setSeed( seed );
+            }
+            else if( seed != random.getSeed() ) {
+                throw new IOException( file + " holds results of seed " + seed + ", not " + random.getSeed() + ". Use another file, or the same seed" );
+            }
+            records = buffer.getInt( COUNT_OFFSET );
+            for( int i = 0; i < records; i++ ) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                results.put( getKey( buffer.getLong( offset ), buffer.getInt( offset + 8 ), buffer.getInt( offset + 12 ),
+                        buffer.getInt( offset + 16 ), buffer.getInt( offset + 20 ) ),
+                        ResultAccumulator.restore( buffer.getLong( offset + 24 ), buffer.getLong( offset + 32 ),
+                                buffer.getLong( offset + 40 ), buffer.getLong( offset + 48 ), buffer.getDouble( offset + 56 ) ) );
+            }
+        }
+    }
+
+    /**
+     * Opens the store the first time it is asked for. As this may change the seed of the sweep (see above), ask
+     * for it before any test rolls.
+     *
+     * @return The store named by {@value #RESULTS_PROPERTY}, or null if the property is not set.
+     * @throws UncheckedIOException if the file cannot be opened, or holds results of another seed or simulation
+     * version
+     */
+    public static synchronized ResultStore getInstance() {
+        if( !opened ) {
+            opened = true;
+            String file = System.getProperty( RESULTS_PROPERTY );
+            if( file != null ) {
+                try {
+                    instance = new ResultStore( new File( file ) );
+                } catch( IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+                //make sure everything reaches the disk when the sweep exits, even if it was killed
+                Runtime.getRuntime().addShutdownHook( new Thread( instance::force ) );
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * A shortcut to the results of a test in the store named by {@value #RESULTS_PROPERTY}.
+     *
+     * @param test The name of the test
+     * @param O The number of options
+     * @param parameter The parameter of the test (N or C)
+     * @param iterations The iterations the test was asked to run
+     * @return The results of the test, or null if the results are not stored.
+     */
+    public static Cell getCell( String test, int O, int parameter, int iterations ) {
+        ResultStore store = getInstance();
+        return (store == null ? null : store.new Cell( test, O, parameter, iterations ));
+    }
+
+    /**
+     * Writes all the changes to the disk.
+     */
+    public synchronized void force() {
+        if( !closed ) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Writes all the changes to the disk and closes the store named by {@value #RESULTS_PROPERTY}, if it was
+     * opened. Call this when the sweep ends; results put after this are lost.
+     */
+    public static synchronized void closeInstance() {
+        if( instance != null ) {
+            instance.close();
+        }
+    }
+
+    private synchronized void close() {
+        if( closed ) {
+            return;
+        }
+        buffer.force();
+        closed = true;
+        try {
+            channel.close();
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private void map( int capacity ) throws IOException {
+        this.capacity = capacity;
+        buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE );
+    }
+
+    /**
+     * The 64 bit FNV-1a hash of the characters of the name of a test. Unlike {@link String#hashCode()}, two
+     * names of a sweep are very unlikely to share a hash, and so to share results.
+     *
+     * @param test
+     * @return
+     */
+    public static long hash( String test ) {
+        long hash = 0xcbf29ce484222325L;
+        for( int i = 0; i < test.length(); i++ ) {
+            hash = (hash ^ test.charAt( i )) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String getKey( long testHash, int O, int parameter, int iterations, int chunk ) {
+        return testHash + "/" + O + "/" + parameter + "/" + iterations + "/" + chunk;
+    }
+
+    private synchronized ResultAccumulator get( long testHash, int O, int parameter, int iterations, int chunk ) {
+        ResultAccumulator result = results.get( getKey( testHash, O, parameter, iterations, chunk ) );
+        return (result == null ? null : new ResultAccumulator().merge( result ));
+    }
+
+    private synchronized void put( long testHash, int O, int parameter, int iterations, int chunk, ResultAccumulator result ) {
+        String key = getKey( testHash, O, parameter, iterations, chunk );
+        if( closed || results.containsKey( key ) ) {
+            return;
+        }
+        try {
+            if( records == capacity ) {
+                map( capacity * 2 );
+            }
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        int offset = HEADER_SIZE + records * RECORD_SIZE;
+        buffer.putLong( offset, testHash );
+        buffer.putInt( offset + 8, O );
+        buffer.putInt( offset + 12, parameter );
+        buffer.putInt( offset + 16, iterations );
+        buffer.putInt( offset + 20, chunk );
+        buffer.putLong( offset + 24, result.getIterations() );
+        buffer.putLong( offset + 32, result.getWins() );
+        buffer.putLong( offset + 40, result.getDraws() );
+        buffer.putLong( offset + 48, result.getVotesUsed() );
+        buffer.putDouble( offset + 56, result.getVotesUsedSquares() );
+        //only now is the record complete
+        records++;
+        buffer.putInt( COUNT_OFFSET, records );
+        results.put( key, ResultAccumulator.restore( result.getIterations(), result.getWins(), result.getDraws(),
+                result.getVotesUsed(), result.getVotesUsedSquares() ) );
+    }
+
+    /**
+     * The results of one test, with the given parameters, in the store.
+     */
+    public final class Cell {
+
+        private final long testHash;
+        private final int O;
+        private final int parameter;
+        private final int iterations;
+
+        private Cell( String test, int O, int parameter, int iterations ) {
+            this.testHash = hash( test );
+            this.O = O;
+            this.parameter = parameter;
+            this.iterations = iterations;
+        }
+
+        /**
+         * @return The result of the whole test, or null if the test has not finished. The difficulties of the
+         * iterations are not stored.
+         */
+        public ResultAccumulator getResult() {
+            return get( testHash, O, parameter, iterations, WHOLE_TEST );
+        }
+
+        /**
+         * @param chunk
+         * @return The result of the chunk, or null if the chunk has not finished.
+         */
+        public ResultAccumulator getChunk( int chunk ) {
+            return get( testHash, O, parameter, iterations, chunk );
+        }
+
+        /**
+         * Stores the result of the whole test, and writes the store to the disk.
+         *
+         * @param result
+         */
+        public void putResult( ResultAccumulator result ) {
+            put( testHash, O, parameter, iterations, WHOLE_TEST, result );
+            force();
+        }
+
+        /**
+         * Stores the result of a chunk.
+         *
+         * @param chunk
+         * @param result
+         */
+        public void putChunk( int chunk, ResultAccumulator result ) {
+            put( testHash, O, parameter, iterations, chunk, result );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests;
+
+import minimumAnswers.main.CostEstimate;
+import minimumAnswers.main.LoggedRandom;
+import minimumAnswers.main.SparseAnswerGenerator;
+import minimumAnswers.libraries.SparseVoteCounter;
+
+/**
+ * Runs the fixed or the fluctuating number test on a large answer space (see {@link SparseAnswerGenerator}),
+ * where the distribution of the options comes from a Zipf or a Dirichlet prior rather than from rolled
+ * percentages. The votes are counted sparsely, so the test runs as fast for O=10000 as for O=6.
+ */
+public class SparseNumberTest implements Runnable, ChunkedTest, CostEstimate {
+
+    public Thread t;
+    private final int O; //Number of Options
+    private final boolean fixed; //true to stop at N answers, false to stop at a margin of C
+    private final int value; //N or C
+    private final int iterations; //How many times to repeat the test
+    private final SparseAnswerGenerator.Prior prior;
+    private final double parameter;
+    /**
+     * If set to true it keeps a note of the distribution of difficulties, in percentages (for verification
+     * purposes). Set to false for performance improvement, if you are running multiple tests.
+     */
+    private static final boolean MEASURE_DIFFICULTIES = false;
+    /**
+     * How many iterations to run to estimate the average number of votes, before scheduling the test.
+     */
+    private static final int PILOT_ITERATIONS = 200;
+
+    /**
+     * @param iterations How many times to repeat the test
+     * @param fixed true to get N answers, false to get answers until the top option leads by C
+     * @param value N or C
+     * @param O The number of options
+     * @param prior The prior of the distribution of the options
+     * @param parameter The exponent of a Zipf prior, or the concentration per option of a Dirichlet prior
+     */
+    public SparseNumberTest( int iterations, boolean fixed, int value, int O, SparseAnswerGenerator.Prior prior, double parameter ) {
+        this.iterations = iterations;
+        this.fixed = fixed;
+        this.value = value;
+        this.O = O;
+        this.prior = prior;
+        this.parameter = parameter;
+        t = new Thread( this );
+    }
+
+    @Override
+    public void run() {
+        ResultAccumulator result = ChunkedIterations.run( this, iterations,
+                ResultStore.getCell( getName(), O, value, iterations ) );
+
+        //Publish it, the sink prints it out
+        String line = String.format( "%1d\t%s(%s)\t%s=%1d\t%.2f\t%.2f\t%.2f",
+                O,
+                prior,
+                parameter,
+                (fixed ? "N" : "C"),
+                value,
+                GenericServices.round( result.getAverageVotesUsed(), 2 ),
+                GenericServices.round( result.getWinPercentage(), 2 ),
+                GenericServices.round( result.getDrawPercentage(), 2 ) );
+        ResultSink.getInstance().publish( new ResultRecord( getName(), O, (fixed ? 'N' : 'C'), value, result, line ) );
+
+        if( MEASURE_DIFFICULTIES ) {
+            System.out.println( result.getDifficulties() );
+        }
+    }
+
+    /**
+     * @return The name the results are stored and published under, which includes the prior.
+     */
+    private String getName() {
+        return "SparseNumberTest " + (fixed ? "fixed " : "fluctuating ") + prior + "(" + parameter + ")";
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " O=" + O + (fixed ? " N=" : " C=") + value;
+    }
+
+    @Override
+    public double estimateCost() {
+        if( fixed ) {
+            return (double) iterations * value;
+        }
+        //the votes needed to reach the margin are not known in advance, so run a few iterations to find out.
+        //The pilot uses its own stream (chunk -1), so it does not affect the results.
+        ResultAccumulator pilot = runChunk( -1, Math.min( PILOT_ITERATIONS, iterations ) );
+        return (double) iterations * pilot.getAverageVotesUsed();
+    }
+
+    @Override
+    public ResultAccumulator runChunk( int chunk, int iterations ) {
+        LoggedRandom.getInstance().bindStream( GenericServices.getStreamId( getName(), O, value, this.iterations, chunk ) );
+
+        //reuse the generator and the votes, so that the iterations only allocate while they warm up
+        SparseAnswerGenerator generator = new SparseAnswerGenerator( prior, O, parameter );
+        SparseVoteCounter votes = new SparseVoteCounter();
+        ResultAccumulator accumulator = new ResultAccumulator();
+        for( int iteration = 0; iteration < iterations; iteration++ ) {
+            votes.reset();
+            generator.regenerate();
+
+            if( fixed ) {
+                for( int i = 0; i < value; i++ ) {
+                    generator.drawInto( votes );
+                }
+            }
+            else {
+                //while the condition is not met, draw another vote
+                while( votes.getMargin() < value ) {
+                    generator.drawInto( votes );
+                }
+            }
+
+            //see how we did
+            accumulator.add( GenericServices.getResult( generator.getTopOptionIndex(), votes ), votes.getTotal() );
+
+            if( MEASURE_DIFFICULTIES ) {
+                accumulator.addDifficulty( (int) Math.round( 100 * generator.getDifference() ) );
+            }
+        }
+        return accumulator;
+    }
+}
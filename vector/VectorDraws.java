@@ -0,0 +1,68 @@
+ /* 
+ * Estimate the minimum amount of answers needed for crowdsourcing systems
+ * Copyright 2014, 2015 Andreas Lianos
+ * 
+ * This file is part of minimumAnswers.
+ *
+ * minimumAnswers is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ *(at your option) any later version.
+ *
+ * minimumAnswers is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with minimumAnswers.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package minimumAnswers.main;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counts blocks of rolls with the Vector API, for {@link BatchDraws}. This is the only class that uses the
+ * incubator module, so it lives in its own source root (vector/) and is only compiled with
+ * {@code --add-modules jdk.incubator.vector}. {@link BatchDraws} loads it by name, when it is there and the JVM
+ * has the module.
+ *
+ * @author Andreas Lianos
+ */
+final class VectorDraws implements BlockCounter {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    VectorDraws() {
+    }
+
+    /**
+     * Counts how many rolls fall in the range of each option, a whole vector of rolls at a time. The rolls below
+     * the end of an option are the rolls of that option and of all the options before it, so each option takes
+     * a single compare and the counts are the differences between consecutive options.
+     *
+     * @param rolls
+     * @param length How many rolls there are, from the start of the array
+     * @param thresholds Where the range of each option ends
+     * @param counts Where to add the count of each option
+     * @return How many rolls were counted. The rest (fewer than a vector) are left to the caller.
+     */
+    @Override
+    public int count( int[] rolls, int length, int[] thresholds, int[] counts ) {
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound( length );
+        int last = thresholds.length - 1;
+        for( int i = 0; i < bound; i += lanes ) {
+            IntVector vector = IntVector.fromArray( SPECIES, rolls, i );
+            int below = 0;
+            for( int option = 0; option < last; option++ ) {
+                int belowEnd = vector.lt( thresholds[option] ).trueCount();
+                counts[option] += belowEnd - below;
+                below = belowEnd;
+            }
+            counts[last] += lanes - below;
+        }
+        return bound;
+    }
+}